@@ -30,9 +30,11 @@ package org.imixs.ml.adapters;
 
 import java.math.BigDecimal;
 import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,9 +59,30 @@ import org.imixs.ml.events.EntityTextEvent;
  * @author rsoika
  *
  */
-public class CurrencyAdapter {
+public class CurrencyAdapter implements EntityAdapter {
     private static Logger logger = Logger.getLogger(CurrencyAdapter.class.getName());
 
+    // precompiled formatters per locale - only used as prototypes for clone
+    private static final Map<Locale, DecimalFormat[]> formatterPrototypes = new ConcurrentHashMap<Locale, DecimalFormat[]>();
+
+    private static final List<Class<?>> VALUE_CLASSES = Arrays.asList(BigDecimal.class, Double.class,
+            Float.class);
+
+    @Override
+    public String getItemType() {
+        return "currency";
+    }
+
+    @Override
+    public List<Class<?>> getValueClasses() {
+        return VALUE_CLASSES;
+    }
+
+    @Override
+    public void onEvent(EntityObjectEvent event) {
+        onObjectEvent(event);
+    }
+
     public void onObjectEvent(@Observes EntityObjectEvent event) {
         if (event.getValue() == null) {
             return;
@@ -88,21 +111,18 @@ public class CurrencyAdapter {
             }
 
             for (Locale locale : event.getLocals()) {
-                DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
-                formatter.applyPattern("#,###,##0.00");
-                event.getEnityTextVariants().add(formatter.format(d));
-                
+                DecimalFormat[] formatters = getFormatters(locale);
+                String s = formatters[0].format(d);
+                event.getEnityTextVariants().add(s);
+
                 // also we provide one pattern where we replace the GroupingSeparator with a blank (e.g. 3 999.00)
-                String s=formatter.format(d);
-                char c=formatter.getDecimalFormatSymbols().getGroupingSeparator();
-                s=s.replace(c, ' ');
+                char c = formatters[0].getDecimalFormatSymbols().getGroupingSeparator();
+                s = s.replace(c, ' ');
                 if (!event.getEnityTextVariants().contains(s)) {
-                	event.getEnityTextVariants().add(s);
+                    event.getEnityTextVariants().add(s);
                 }
 
-                formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
-                formatter.applyPattern("0.00");
-                event.getEnityTextVariants().add(formatter.format(d));
+                event.getEnityTextVariants().add(formatters[1].format(d));
             }
 
         } catch (NumberFormatException nfe) {
@@ -110,6 +130,25 @@ public class CurrencyAdapter {
         }
     }
 
+    /**
+     * Returns new formatters for the patterns '#,###,##0.00' and '0.00' of a
+     * locale. The formatters are cloned from precompiled prototypes, because a
+     * DecimalFormat is not thread-safe.
+     * 
+     * @param locale
+     * @return array of formatters
+     */
+    private static DecimalFormat[] getFormatters(Locale locale) {
+        DecimalFormat[] prototypes = formatterPrototypes.computeIfAbsent(locale, l -> {
+            DecimalFormat grouping = (DecimalFormat) DecimalFormat.getInstance(l);
+            grouping.applyPattern("#,###,##0.00");
+            DecimalFormat plain = (DecimalFormat) DecimalFormat.getInstance(l);
+            plain.applyPattern("0.00");
+            return new DecimalFormat[] { grouping, plain };
+        });
+        return new DecimalFormat[] { (DecimalFormat) prototypes[0].clone(), (DecimalFormat) prototypes[1].clone() };
+    }
+
     /**
      * The Probem with detected currencies are the different digit separtors
      * depending on the locale.
@@ -122,6 +161,7 @@ public class CurrencyAdapter {
      * 
      * @param event
      */
+    @Override
     public void onTextEvent(@Observes EntityTextEvent event) {
         boolean debug = logger.isLoggable(Level.FINE);
         // if the event already has a object then we return
@@ -140,39 +180,12 @@ public class CurrencyAdapter {
         BigDecimal result = null;
 
         for (String variant : variants) {
-
-            // test if the variant is a US currency format
-            if (variant.indexOf(",") > -1 && variant.indexOf(".") > -1 && variant.indexOf(",") < variant.indexOf(".")) {
-                String oldVariant = variant;
-                variant = variant.replace(",", "");
-                if (debug) {
-                    logger.finest("...US Currency format: " + oldVariant + " converted into: " + variant);
-                }
-            }
-            // test if variant contains multipl ,
-            if (variant.split(",").length > 2) {
-                // remove ,
-                String oldVariant = variant;
-                variant = variant.replace(",", "");
-                if (debug) {
-                    logger.finest("... Currency format: " + oldVariant + " converted into: " + variant);
-                }
+            // the scanner removes US and multiple grouping separators, fixes bad OCR
+            // scan quality and strips spaces while reading the variant
+            BigDecimal b = CurrencyTextScanner.scan(variant, event.getLocals());
+            if (debug) {
+                logger.finest("...currency variant: " + variant + " converted into: " + b);
             }
-            // test if variant contains multipl ,
-            if (variant.split("\\.").length > 2) {
-                // remove .
-                String oldVariant = variant;
-                variant = variant.replace(".", "");
-                if (debug) {
-                    logger.finest("... Currency format: " + oldVariant + " converted into: " + variant);
-                }
-            }
-
-            // fix bad OCR scan quality
-            variant = OCRTextAdapter.letterToNumber(variant);
-            variant = OCRTextAdapter.stripSpaces(variant);
-
-            BigDecimal b = textToCurrency(variant, event.getLocals());
             if (b != null) {
                 if (result != null) {
                     // take highest value...
@@ -192,72 +205,4 @@ public class CurrencyAdapter {
 
     }
 
-    /**
-     * This helper method translates a text into a BigDecimal by applying different
-     * currency formats and different locals.
-     * <p>
-     * The method verifies the DecimalSeparator and GroupingSeparator to validate if
-     * the currency text can be applied to the given locale. If the DecimalSeparator
-     * is missing but a getGroupingSeparator is found, than we assume that this text
-     * can not be calculated with the current locale. (e.g. 123.44 seems not to be a
-     * German currency)
-     * 
-     * @param text   - text representing a number
-     * @param locals - list of locales
-     * @return BigDecimal or null if no number was found.
-     */
-    private BigDecimal textToCurrency(String text, List<Locale> locals) {
-        for (Locale locale : locals) {
-
-            DecimalFormatSymbols dfs = new DecimalFormatSymbols(locale);
-
-            char d = dfs.getDecimalSeparator();
-            char g = dfs.getGroupingSeparator();
-
-            // validate GroupingSeparator... it may happen that a groupSeperator is not
-            // available in case the locale is only a language locale
-            if (text.indexOf(d) == -1 && (g == 160 || text.indexOf(g) > -1)) {
-                // locale did not match text format
-                continue;
-            }
-
-            BigDecimal b = null;
-
-            b = formatTextToNumber(text, "#,###,##0.00", locale);
-            if (b == null) {
-                // try second pattern
-                b = formatTextToNumber(text, "0.00", locale);
-            }
-            if (b != null) {
-                return b;
-            }
-        }
-        // no match!
-        return null;
-    }
-
-    /**
-     * This helper method formats a text by a given number pattern and a locale into
-     * number.
-     * 
-     * @param text
-     * @param pattern
-     * @param locale
-     * @return
-     */
-    private BigDecimal formatTextToNumber(String text, String pattern, Locale locale) {
-        DecimalFormat formatter = (DecimalFormat) DecimalFormat.getInstance(locale);
-        formatter.applyPattern(pattern);
-
-        try {
-            Number n = formatter.parse(text);
-            Double d = n.doubleValue();
-            return BigDecimal.valueOf(d);
-
-        } catch (java.text.ParseException e) {
-            // no number!
-        }
-        return null;
-    }
-
 }
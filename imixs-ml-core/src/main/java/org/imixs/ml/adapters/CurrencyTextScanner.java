@@ -0,0 +1,286 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.adapters;
+
+import java.math.BigDecimal;
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The CurrencyTextScanner reads an amount from a text in one pass without
+ * creating intermediate strings.
+ * <p>
+ * The scanner applies the following rules used by the CurrencyAdapter:
+ * <ul>
+ * <li>a ',' before the first '.' is a US grouping separator (e.g. 3,695.34)
+ * <li>a ',' or '.' found more than once is a grouping separator (e.g.
+ * 3.695.000)
+ * <li>OCR errors are fixed: 'O' and 'o' are read as '0', 'I' and 'l' as '1'
+ * (see {@link OCRTextAdapter})
+ * <li>spaces are ignored (e.g. 3 990.34)
+ * </ul>
+ * The locales are only used to decide which of the remaining separators is the
+ * decimal separator. A locale is skipped if its decimal separator is not part of
+ * the text but its grouping separator is. The amount is read from the start of
+ * the text like a lenient DecimalFormat and returned as a BigDecimal. If no
+ * number is found, the next locale is tried.
+ * 
+ * @author rsoika
+ *
+ */
+public class CurrencyTextScanner {
+
+    // decimal separator, grouping separator, minus sign and exponent per locale
+    private static final Map<Locale, char[]> localeSymbols = new ConcurrentHashMap<Locale, char[]>();
+
+    // number of digits held in a long without overflow
+    private static final int MAX_DIGITS = 18;
+
+    private final String text;
+    private boolean removeCommas;
+    private boolean removeDots;
+
+    private CurrencyTextScanner(String text) {
+        this.text = text;
+        int firstComma = -1;
+        int firstDot = -1;
+        int commas = 0;
+        int dots = 0;
+        // separators in front of the last other character
+        int commasBeforeLastNonComma = 0;
+        int dotsBeforeLastNonDot = 0;
+        int dotsBeforeLastOther = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ',') {
+                if (firstComma == -1) {
+                    firstComma = i;
+                }
+                commas++;
+                dotsBeforeLastNonDot = dots;
+            } else if (c == '.') {
+                if (firstDot == -1) {
+                    firstDot = i;
+                }
+                dots++;
+                commasBeforeLastNonComma = commas;
+            } else {
+                commasBeforeLastNonComma = commas;
+                dotsBeforeLastNonDot = dots;
+                dotsBeforeLastOther = dots;
+            }
+        }
+        // the text is split by a separator if it separates more than two parts
+        removeCommas = (firstComma > -1 && firstDot > -1 && firstComma < firstDot) || commasBeforeLastNonComma > 1;
+        removeDots = (removeCommas ? dotsBeforeLastOther : dotsBeforeLastNonDot) > 1;
+    }
+
+    /**
+     * Reads an amount from a text by the first matching locale.
+     * 
+     * @param text   - text representing a number
+     * @param locals - list of locales
+     * @return BigDecimal or null if no number was found.
+     */
+    public static BigDecimal scan(String text, List<Locale> locals) {
+        if (text == null || locals == null) {
+            return null;
+        }
+        CurrencyTextScanner scanner = new CurrencyTextScanner(text);
+        for (Locale locale : locals) {
+            char[] symbols = getSymbols(locale);
+            char d = symbols[0];
+            char g = symbols[1];
+            // validate GroupingSeparator... it may happen that a groupSeperator is not
+            // available in case the locale is only a language locale
+            if (!scanner.contains(d) && (g == 160 || scanner.contains(g))) {
+                // locale did not match text format
+                continue;
+            }
+            BigDecimal result = scanner.read(symbols);
+            if (result != null) {
+                return result;
+            }
+        }
+        // no match!
+        return null;
+    }
+
+    /**
+     * Returns the separators of a locale.
+     */
+    private static char[] getSymbols(Locale locale) {
+        return localeSymbols.computeIfAbsent(locale, l -> {
+            DecimalFormatSymbols dfs = new DecimalFormatSymbols(l);
+            String exponent = dfs.getExponentSeparator();
+            return new char[] { dfs.getDecimalSeparator(), dfs.getGroupingSeparator(), dfs.getMinusSign(),
+                    exponent.length() == 1 ? exponent.charAt(0) : 0 };
+        });
+    }
+
+    /**
+     * Returns the character of the text at a position after the OCR fixes, or 0 if
+     * the character is ignored.
+     */
+    private char charAt(int pos) {
+        char c = text.charAt(pos);
+        switch (c) {
+        case 'O':
+        case 'o':
+            return '0';
+        case 'I':
+        case 'l':
+            return '1';
+        case ' ':
+            return 0;
+        case ',':
+            return removeCommas ? 0 : c;
+        case '.':
+            return removeDots ? 0 : c;
+        default:
+            return c;
+        }
+    }
+
+    /**
+     * Returns the position of the next character which is not ignored or the text
+     * length.
+     */
+    private int next(int pos) {
+        while (pos < text.length() && charAt(pos) == 0) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private boolean contains(char c) {
+        for (int i = 0; i < text.length(); i++) {
+            if (c != 0 && charAt(i) == c) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the number at the start of the text. The grouping separator is ignored
+     * if it is followed by a digit. The number ends at the first other character.
+     * 
+     * @return BigDecimal or null if the text does not start with a number
+     */
+    private BigDecimal read(char[] symbols) {
+        char decimal = symbols[0];
+        char grouping = symbols[1];
+        int pos = next(0);
+        boolean negative = false;
+        if (pos < text.length() && charAt(pos) == symbols[2]) {
+            negative = true;
+            pos = next(pos + 1);
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean sawDigit = false;
+        boolean sawDecimal = false;
+        int exponent = 0;
+        for (; pos < text.length(); pos = next(pos + 1)) {
+            char c = charAt(pos);
+            int digit = Character.digit(c, 10);
+            if (digit >= 0) {
+                sawDigit = true;
+                if (digits < MAX_DIGITS) {
+                    if (unscaled > 0 || digit > 0) {
+                        digits++;
+                    }
+                    unscaled = unscaled * 10 + digit;
+                    if (sawDecimal) {
+                        scale++;
+                    }
+                } else if (!sawDecimal) {
+                    // integer digits beyond the precision
+                    scale--;
+                }
+            } else if (c == decimal) {
+                if (sawDecimal) {
+                    break;
+                }
+                sawDecimal = true;
+            } else if (c == grouping) {
+                if (sawDecimal) {
+                    break;
+                }
+                // ignored
+            } else {
+                if (c == symbols[3] && symbols[3] != 0) {
+                    exponent = readExponent(next(pos + 1), symbols[2]);
+                }
+                break;
+            }
+        }
+        if (!sawDigit) {
+            return null;
+        }
+        double value = BigDecimal.valueOf(negative ? -unscaled : unscaled, scale - exponent).doubleValue();
+        if (Double.isInfinite(value)) {
+            return null;
+        }
+        if (value == 0) {
+            // no negative zero
+            value = 0;
+        }
+        // same scale as the double value of a DecimalFormat (e.g. 1500.0)
+        return BigDecimal.valueOf(value);
+    }
+
+    /**
+     * Reads an optional signed exponent. Returns 0 if no digits follow.
+     */
+    private int readExponent(int pos, char minus) {
+        boolean negative = false;
+        if (pos < text.length() && charAt(pos) == minus) {
+            negative = true;
+            pos = next(pos + 1);
+        }
+        int exponent = 0;
+        for (; pos < text.length(); pos = next(pos + 1)) {
+            int digit = Character.digit(charAt(pos), 10);
+            if (digit < 0) {
+                break;
+            }
+            // larger exponents are not supported
+            exponent = Math.min(exponent * 10 + digit, 1000);
+        }
+        return negative ? -exponent : exponent;
+    }
+}
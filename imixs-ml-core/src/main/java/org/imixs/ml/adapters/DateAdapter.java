@@ -28,17 +28,23 @@
 
 package org.imixs.ml.adapters;
 
-import java.text.DateFormat;
-import java.text.ParseException;
+import java.text.ParsePosition;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 
 import jakarta.enterprise.event.Observes;
 
@@ -59,124 +65,131 @@ import org.imixs.ml.events.EntityTextEvent;
  * @author rsoika
  *
  */
-public class DateAdapter {
+public class DateAdapter implements EntityAdapter {
     private static Logger logger = Logger.getLogger(DateAdapter.class.getName());
 
+    // precompiled formatters - a DateTimeFormatter is immutable and thread-safe
+    private static final DateTimeFormatter[] SIMPLE_FORMATTERS = ofPatterns("yyyy-MM-dd", "dd/MM/yyyy",
+            "dd/MM/yy", "dd.MM.yyyy", "d.M.yyyy", "dd.MM.yy", "d.M.yy", "dd-MM-yyyy");
+
+    // locale patterns - the variants of the second list are converted to upper case
+    private static final String[] LOCALE_PATTERNS = { "d MMMM yyyy", "d. MMMM yyyy", "dd.MMM.yyyy",
+            "dd-MMM-yyyy" };
+    // e.g. 'APR. 14, 2021' (special use case (maybe IBM AS400), '14/APR/2021',
+    // '05 MAY 2021', '05-MAY-2021'
+    private static final String[] LOCALE_UPPERCASE_PATTERNS = { "dd.MMM.yyyy", "MMM. dd, yyyy", "MMM dd, yyyy",
+            "dd/MMM/yyyy", "dd MMM yyyy", "dd-MMM-yyyy" };
+
+    // patterns to parse a text variant
+    private static final Pattern START_WITH_4DIGITS_YEAR = Pattern.compile("\\d{4}.\\d{2}.\\d{2}");
+    private static final Pattern END_WITH_4DIGITS_YEAR = Pattern.compile("\\d{2}.\\d{2}.\\d{4}");
+    private static final String[] SIMPLE_PATTERNS_END_WITH_4DIGITS_YEAR = { "dd.MM.yyyy", "d.M.yyyy", "dd/MM/yyyy",
+            "dd-MM-yyyy" };
+    private static final String[] SIMPLE_PATTERNS_START_WITH_4DIGITS_YEAR = { "yyyy-MM-dd", "yyyy.MM.dd" };
+    private static final String[] SIMPLE_PATTERNS_2DIGITS_YEAR = { "dd.MM.yy", "d.M.yy", "dd/MM/yy" };
+    private static final String[] LOCALE_PARSE_PATTERNS = { "d MMMMM yyyy", "d. MMMMM yyyy", "MMM. dd, yyyy",
+            "MMM dd, yyyy", "dd/MMM/yyyy", "dd.MMM.yyyy", "dd MMM yyyy", "dd-MMM-yyyy" };
+
+    // a SimpleDateFormat is not thread-safe and is therefore cached per thread
+    private static final ThreadLocal<Map<String, SimpleDateFormat>> parseFormats = ThreadLocal
+            .withInitial(HashMap::new);
+
+    private static final Map<Locale, DateTimeFormatter[]> localeFormatters = new ConcurrentHashMap<Locale, DateTimeFormatter[]>();
+    private static final Map<Locale, DateTimeFormatter[]> localeUppercaseFormatters = new ConcurrentHashMap<Locale, DateTimeFormatter[]>();
+
+    private static final List<Class<?>> VALUE_CLASSES = Arrays.asList(Date.class, Calendar.class, LocalDate.class,
+            LocalDateTime.class);
+
+    @Override
+    public String getItemType() {
+        return "date";
+    }
+
+    @Override
+    public List<Class<?>> getValueClasses() {
+        return VALUE_CLASSES;
+    }
+
+    @Override
     public void onEvent(@Observes EntityObjectEvent event) {
         if (event.getValue() == null) {
             return;
         }
         // test if the value can be converted into date...
-        Date date = null;
+        LocalDate date = null;
         if ((event.getValue()) instanceof Date) {
-            date = (Date) event.getValue();
+            date = toLocalDate(((Date) event.getValue()).getTime());
         }
         if ((event.getValue()) instanceof Calendar) {
-            date = ((Calendar) event.getValue()).getTime();
+            date = toLocalDate(((Calendar) event.getValue()).getTimeInMillis());
         }
         if ((event.getValue()) instanceof LocalDate) {
-            LocalDate ld = (LocalDate) event.getValue();
-            date = Date.from(ld.atStartOfDay().atZone(ZoneId.systemDefault()).toInstant());
+            date = (LocalDate) event.getValue();
         }
         if ((event.getValue()) instanceof LocalDateTime) {
-            LocalDateTime ldt = (LocalDateTime) event.getValue();
-            date = Date.from(ldt.atZone(ZoneId.systemDefault()).toInstant());
+            date = ((LocalDateTime) event.getValue()).toLocalDate();
         }
 
         if (date == null) {
             return;
         }
-        try {
-
-            // add all supported date formats...
-            DateFormat dateFormat = null;
-
-            dateFormat = new SimpleDateFormat("yyyy-MM-dd");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("dd/MM/yyyy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("dd/MM/yy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("dd.MM.yyyy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("d.M.yyyy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("dd.MM.yy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("d.M.yy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
-
-            dateFormat = new SimpleDateFormat("dd-MM-yyyy");
-            event.getEnityTextVariants().add(dateFormat.format(date));
 
-            if (event.getLocals() == null || event.getLocals().size() == 0) {
-                logger.warning("missing locals - adapter can not applied locale formats!");
-
-            } else {
-                for (Locale locale : event.getLocals()) {
-                    dateFormat = new SimpleDateFormat("d MMMMM yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date));
-                    dateFormat = new SimpleDateFormat("d. MMMMM yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date));
-                    dateFormat = new SimpleDateFormat("d. MMMMM yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date));
-                    dateFormat = new SimpleDateFormat("dd.MMM.yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date));
-                    dateFormat = new SimpleDateFormat("dd.MMM.yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
+        // add all supported date formats...
+        for (DateTimeFormatter formatter : SIMPLE_FORMATTERS) {
+            event.getEnityTextVariants().add(formatter.format(date));
+        }
 
-                    // APR. 14, 2021 (special use case (maybe IBM AS400)
-                    dateFormat = new SimpleDateFormat("MMM. dd, yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
-                    dateFormat = new SimpleDateFormat("MMM dd, yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
-                    
-                    // 14/APR/2021  - dd/mm/yyyy
-                    dateFormat = new SimpleDateFormat("dd/MMM/yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
-                    
-                    // 05 MAY 2021
-                    dateFormat = new SimpleDateFormat("dd MMM yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
-                    
-                    // 05-MAY-2021
-                    dateFormat = new SimpleDateFormat("dd-MMM-yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date).toUpperCase());
-                    
-                    // 05-May-2021
-                    dateFormat = new SimpleDateFormat("dd-MMM-yyyy", locale);
-                    event.getEnityTextVariants().add(dateFormat.format(date));
-                    
+        if (event.getLocals() == null || event.getLocals().size() == 0) {
+            logger.warning("missing locals - adapter can not applied locale formats!");
+        } else {
+            for (Locale locale : event.getLocals()) {
+                for (DateTimeFormatter formatter : localeFormatters.computeIfAbsent(locale,
+                        l -> ofPatterns(l, LOCALE_PATTERNS))) {
+                    event.getEnityTextVariants().add(formatter.format(date));
+                }
+                for (DateTimeFormatter formatter : localeUppercaseFormatters.computeIfAbsent(locale,
+                        l -> ofPatterns(l, LOCALE_UPPERCASE_PATTERNS))) {
+                    event.getEnityTextVariants().add(formatter.format(date).toUpperCase());
                 }
             }
+        }
+    }
+
+    /**
+     * Converts a time in milliseconds into a LocalDate of the default time zone.
+     * 
+     * @param millis
+     * @return LocalDate
+     */
+    private static LocalDate toLocalDate(long millis) {
+        return Instant.ofEpochMilli(millis).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static DateTimeFormatter[] ofPatterns(String... patterns) {
+        return ofPatterns(Locale.getDefault(Locale.Category.FORMAT), patterns);
+    }
 
-        } catch (NumberFormatException nfe) {
-            // not a number
+    private static DateTimeFormatter[] ofPatterns(Locale locale, String... patterns) {
+        DateTimeFormatter[] result = new DateTimeFormatter[patterns.length];
+        for (int i = 0; i < patterns.length; i++) {
+            result[i] = DateTimeFormatter.ofPattern(patterns[i], locale);
         }
+        return result;
     }
 
     /**
      * Method to parse text variants for date objects. The event is only processed
      * if the event type is 'date'.
+     * <p>
+     * The shape of a variant is classified first, so only the patterns which can
+     * match the variant are tried. A variant without a digit can not be parsed by
+     * any pattern and the locale patterns require a letter for the month name.
      * 
      * @param event
      */
+    @Override
     public void onTextEvent(@Observes EntityTextEvent event) {
 
-        String REGEX_START_WITH_4DIGITS_YEAR="\\d{4}.\\d{2}.\\d{2}";
-        String REGEX_END_WITH_4DIGITS_YEAR="\\d{2}.\\d{2}.\\d{4}";
-
-        String[] simplePatternListEndWith4DigitsYear = { "dd.MM.yyyy", "d.M.yyyy", "dd/MM/yyyy",  "dd-MM-yyyy" };
-        String[] simplePatternListStartWith4DigitsYear = { "yyyy-MM-dd", "yyyy.MM.dd" };
-        String[] simplePatternList2DigitsYear = {  "dd.MM.yy", "d.M.yy" ,  "dd/MM/yy"   };
-        String[] localePatternList = { "d MMMMM yyyy", "d. MMMMM yyyy", "MMM. dd, yyyy", "MMM dd, yyyy", "dd/MMM/yyyy", "dd.MMM.yyyy", "dd MMM yyyy","dd-MMM-yyyy" };
-
         // if the event already has a object then we return
         if (event.getItemValue() != null) {
             return;
@@ -191,44 +204,47 @@ public class DateAdapter {
 
         List<String> variants = event.getTextVariants();
         Date result = null;
+        boolean hasLocales = event.getLocals() != null && event.getLocals().size() > 0;
 
         for (String variant : variants) {
+            boolean hasDigit = false;
+            boolean hasLetter = false;
+            for (int i = 0; i < variant.length(); i++) {
+                char c = variant.charAt(i);
+                hasDigit = hasDigit || Character.isDigit(c);
+                hasLetter = hasLetter || Character.isLetter(c);
+            }
+            if (!hasDigit) {
+                continue;
+            }
 
             // do we start with 4 digts year?
-            if (variant.matches(REGEX_END_WITH_4DIGITS_YEAR)) {
-                for (String simplePattern : simplePatternListEndWith4DigitsYear) {
-                    result = parseDateByPattern(variant, simplePattern);
-                    if (result != null) {
-                        event.setItemValue(result);
-                        return;
-                    }
-                }
-            } else if (variant.matches(REGEX_START_WITH_4DIGITS_YEAR)) {
-                for (String simplePattern : simplePatternListStartWith4DigitsYear) {
-                    result = parseDateByPattern(variant, simplePattern);
-                    if (result != null) {
-                        event.setItemValue(result);
-                        return;
-                    }
-                }
+            String[] simplePatterns;
+            if (END_WITH_4DIGITS_YEAR.matcher(variant).matches()) {
+                simplePatterns = SIMPLE_PATTERNS_END_WITH_4DIGITS_YEAR;
+            } else if (START_WITH_4DIGITS_YEAR.matcher(variant).matches()) {
+                simplePatterns = SIMPLE_PATTERNS_START_WITH_4DIGITS_YEAR;
             } else {
                 // test simple pattern list (2digts year)
-                for (String simplePattern : simplePatternList2DigitsYear) {
-                    result = parseDateByPattern(variant, simplePattern);
-                    if (result != null) {
-                        event.setItemValue(result);
-                        return;
-                    }
+                simplePatterns = SIMPLE_PATTERNS_2DIGITS_YEAR;
+            }
+            for (String simplePattern : simplePatterns) {
+                result = parseDateByPattern(variant, simplePattern, null);
+                if (result != null) {
+                    event.setItemValue(result);
+                    return;
                 }
             }
 
-            // try locale patterns if locale is provided
-            if (event.getLocals() != null && event.getLocals().size() > 0) {
-                for (String localePattern : localePatternList) {
-                    result = parseDateByLocale(variant, localePattern, event.getLocals());
-                    if (result != null) {
-                        event.setItemValue(result);
-                        return;
+            // try locale patterns if locale is provided - a month name needs a letter
+            if (hasLocales && hasLetter) {
+                for (String localePattern : LOCALE_PARSE_PATTERNS) {
+                    for (Locale locale : event.getLocals()) {
+                        result = parseDateByPattern(variant, localePattern, locale);
+                        if (result != null) {
+                            event.setItemValue(result);
+                            return;
+                        }
                     }
                 }
             }
@@ -237,46 +253,23 @@ public class DateAdapter {
     }
 
     /**
-     * Helper method to parse a string for a date object by a given pattern.
+     * Helper method to parse a string for a date object by a given pattern and
+     * locale. The SimpleDateFormat is reused per thread and returns null instead
+     * of throwing a ParseException if the text can not be parsed.
      * 
      * @param pattern - date pattern
+     * @param locale  - locale or null for the default locale
      * @return date object if parse able - otherwise null.
      */
-    private Date parseDateByPattern(String text, String pattern) {
-        try {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(pattern);
-            Date result = dateFormat.parse(text);
-            // success!
-            return result;
-        } catch (ParseException e) {
-            // unable to parse ...
-            return null;
-        }
-
-    }
-
-    /**
-     * Helper method to parse a string for a date object by a given pattern and all
-     * available locales.
-     * 
-     * @param pattern - date pattern
-     * @return date object if parse able - otherwise null.
-     */
-    private Date parseDateByLocale(String text, String pattern, List<Locale> locales) {
-
-        for (Locale locale : locales) {
-
-            try {
-                SimpleDateFormat dateFormat = new SimpleDateFormat(pattern, locale);
-                Date result = dateFormat.parse(text);
-                // success!
-                return result;
-            } catch (ParseException e) {
-                // unable to parse ...
-                continue;
-            }
+    private static Date parseDateByPattern(String text, String pattern, Locale locale) {
+        Map<String, SimpleDateFormat> formats = parseFormats.get();
+        String key = locale == null ? pattern : pattern + "|" + locale.toLanguageTag();
+        SimpleDateFormat dateFormat = formats.get(key);
+        if (dateFormat == null) {
+            dateFormat = locale == null ? new SimpleDateFormat(pattern) : new SimpleDateFormat(pattern, locale);
+            formats.put(key, dateFormat);
         }
-        return null;
+        return dateFormat.parse(text, new ParsePosition(0));
     }
 
 }
@@ -0,0 +1,81 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.adapters;
+
+import java.util.List;
+
+import org.imixs.ml.events.EntityObjectEvent;
+import org.imixs.ml.events.EntityTextEvent;
+
+/**
+ * An EntityAdapter provides text variants for an entity value and resolves an
+ * entity value from a list of text variants.
+ * <p>
+ * Entity adapters are registered in the {@link EntityAdapterRegistry} by the
+ * Java ServiceLoader. A custom adapter is added by listing its class name in
+ * the file {@code META-INF/services/org.imixs.ml.adapters.EntityAdapter}. The
+ * registry calls an adapter only for the value classes and the item type it
+ * declares.
+ * 
+ * @author rsoika
+ *
+ */
+public interface EntityAdapter {
+
+    /**
+     * Returns the item type resolved by the adapter, e.g. 'date'
+     * 
+     * @return item type
+     */
+    String getItemType();
+
+    /**
+     * Returns the value classes the adapter provides text variants for. The
+     * adapter is also called for subclasses.
+     * 
+     * @return list of value classes
+     */
+    List<Class<?>> getValueClasses();
+
+    /**
+     * Adds the text variants of the event value.
+     * 
+     * @param event
+     */
+    void onEvent(EntityObjectEvent event);
+
+    /**
+     * Sets the item value of the event if a text variant can be resolved.
+     * 
+     * @param event
+     */
+    void onTextEvent(EntityTextEvent event);
+
+}
@@ -0,0 +1,189 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.adapters;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Event;
+import jakarta.inject.Inject;
+
+import org.imixs.ml.events.EntityObjectEvent;
+import org.imixs.ml.events.EntityTextEvent;
+
+/**
+ * The EntityAdapterRegistry dispatches the EntityObjectEvent and the
+ * EntityTextEvent directly to the {@link EntityAdapter} responsible for the
+ * value class or the item type of an event.
+ * <p>
+ * The adapters are loaded by the Java ServiceLoader. If no adapter is
+ * registered for a value class or an item type, the event is fired as a CDI
+ * event to all observers. This is also the case for a text event without an
+ * item type.
+ * <p>
+ * Note: a CDI observer of the EntityObjectEvent or the EntityTextEvent is not
+ * called for a value class or item type handled by a registered adapter.
+ * Custom adapters for these should be registered as an EntityAdapter.
+ * 
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class EntityAdapterRegistry {
+
+    private static Logger logger = Logger.getLogger(EntityAdapterRegistry.class.getName());
+
+    private Map<String, List<EntityAdapter>> typeAdapters = new HashMap<String, List<EntityAdapter>>();
+    private Map<Class<?>, List<EntityAdapter>> classAdapters = new HashMap<Class<?>, List<EntityAdapter>>();
+    // adapters per concrete value class including the adapters of super classes
+    private Map<Class<?>, List<EntityAdapter>> resolvedClassAdapters = new ConcurrentHashMap<Class<?>, List<EntityAdapter>>();
+
+    @Inject
+    protected Event<EntityObjectEvent> entityObjectEvents;
+
+    @Inject
+    protected Event<EntityTextEvent> entityTextEvents;
+
+    /**
+     * Registers all EntityAdapters provided by the ServiceLoader.
+     */
+    @PostConstruct
+    public void init() {
+        for (EntityAdapter adapter : ServiceLoader.load(EntityAdapter.class)) {
+            register(adapter);
+        }
+    }
+
+    /**
+     * Registers an EntityAdapter. Adapters are called in the order of their
+     * registration. All adapters should be registered before the first event is
+     * dispatched.
+     * 
+     * @param adapter
+     */
+    public void register(EntityAdapter adapter) {
+        logger.fine("register EntityAdapter " + adapter.getClass().getName());
+        if (adapter.getItemType() != null && !adapter.getItemType().isEmpty()) {
+            typeAdapters.computeIfAbsent(adapter.getItemType().toLowerCase(), k -> new ArrayList<EntityAdapter>())
+                    .add(adapter);
+        }
+        if (adapter.getValueClasses() != null) {
+            for (Class<?> valueClass : adapter.getValueClasses()) {
+                classAdapters.computeIfAbsent(valueClass, k -> new ArrayList<EntityAdapter>()).add(adapter);
+            }
+        }
+        resolvedClassAdapters.clear();
+    }
+
+    /**
+     * Calls the adapters registered for the class of the event value. If no
+     * adapter is registered the event is fired as a CDI event.
+     * 
+     * @param event
+     */
+    public void fireObjectEvent(EntityObjectEvent event) {
+        List<EntityAdapter> adapters = Collections.emptyList();
+        if (event.getValue() != null) {
+            adapters = resolvedClassAdapters.computeIfAbsent(event.getValue().getClass(), this::findClassAdapters);
+        }
+        if (adapters.isEmpty()) {
+            if (entityObjectEvents != null) {
+                entityObjectEvents.fire(event);
+            }
+            return;
+        }
+        for (EntityAdapter adapter : adapters) {
+            adapter.onEvent(event);
+        }
+    }
+
+    /**
+     * Calls the adapters registered for the item type of the event until an
+     * adapter resolves the item value. If the event has no item type or no
+     * adapter is registered for the type, the event is fired as a CDI event.
+     * 
+     * @param event
+     */
+    public void fireTextEvent(EntityTextEvent event) {
+        List<EntityAdapter> adapters = null;
+        if (event.getItemType() != null && !event.getItemType().isEmpty()) {
+            adapters = typeAdapters.get(event.getItemType().toLowerCase());
+        }
+        if (adapters == null) {
+            if (entityTextEvents != null) {
+                entityTextEvents.fire(event);
+            }
+            return;
+        }
+        for (EntityAdapter adapter : adapters) {
+            adapter.onTextEvent(event);
+            if (event.getItemValue() != null) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Collects the adapters of a value class, its super classes and interfaces.
+     */
+    private List<EntityAdapter> findClassAdapters(Class<?> valueClass) {
+        List<EntityAdapter> result = new ArrayList<EntityAdapter>();
+        List<Class<?>> classes = new ArrayList<Class<?>>();
+        for (Class<?> c = valueClass; c != null; c = c.getSuperclass()) {
+            classes.add(c);
+        }
+        for (int i = 0; i < classes.size(); i++) {
+            for (Class<?> c : classes.get(i).getInterfaces()) {
+                if (!classes.contains(c)) {
+                    classes.add(c);
+                }
+            }
+        }
+        for (Class<?> c : classes) {
+            List<EntityAdapter> adapters = classAdapters.get(c);
+            if (adapters != null) {
+                for (EntityAdapter adapter : adapters) {
+                    if (!result.contains(adapter)) {
+                        result.add(adapter);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -28,6 +28,7 @@
 
 package org.imixs.ml.adapters;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -50,10 +51,22 @@ import org.imixs.ml.events.EntityTextEvent;
  * @author rsoika
  *
  */
-public class IBANAdapter {
+public class IBANAdapter implements EntityAdapter {
 
     public static final String IBAN_PATTERN = "^$|(^[A-Z]{2}(?:[ ]?[A-Z0-9]){13,32}$)";
+    private static final Pattern ibanPattern = Pattern.compile(IBAN_PATTERN);
 
+    @Override
+    public String getItemType() {
+        return "iban";
+    }
+
+    @Override
+    public List<Class<?>> getValueClasses() {
+        return Collections.singletonList(String.class);
+    }
+
+    @Override
     public void onEvent(@Observes EntityObjectEvent event) {
 
         if (event.getValue() == null) {
@@ -61,7 +74,7 @@ public class IBANAdapter {
         }
         // test if the value is an IBAN
         String iban = event.getValue().toString();
-        if (Pattern.matches(IBAN_PATTERN, iban)) {
+        if (ibanPattern.matcher(iban).matches()) {
 
             // first take the string as is...
             event.getEnityTextVariants().add(iban.trim());
@@ -94,6 +107,7 @@ public class IBANAdapter {
      * 
      * @param event
      */
+    @Override
     public void onTextEvent(@Observes EntityTextEvent event) {
 
         // if the event already has a object then we return
@@ -110,7 +124,7 @@ public class IBANAdapter {
 
         List<String> variants = event.getTextVariants();
         for (String variant : variants) {
-            if (Pattern.matches(IBAN_PATTERN, variant)) {
+            if (ibanPattern.matcher(variant).matches()) {
                 event.setItemValue(variant);
                 return;
             }
@@ -40,7 +40,7 @@ public class OCRTextAdapter {
      */
     public static String stripSpaces(String text) {
         String result = text;
-        result = result.replaceAll(" ", "");
+        result = result.replace(" ", "");
         return result;
     }
 
@@ -0,0 +1,155 @@
+package org.imixs.ml.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientRequestFilter;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * The GZipFilter compresses request bodies and decompresses responses of the
+ * MLClient.
+ * <p>
+ * A request body is send with the header 'Content-Encoding: gzip' if its size
+ * exceeds the given threshold. Only the first bytes up to the threshold are
+ * buffered, the rest of the body is compressed while it is written. Smaller
+ * bodies are send uncompressed. All requests accept gzip compressed responses.
+ * <p>
+ * Usage:
+ * {@code
+ * client.register(new GZipFilter(8192));
+ * }
+ * 
+ * @author rsoika
+ *
+ */
+public class GZipFilter implements ClientRequestFilter, ClientResponseFilter, WriterInterceptor {
+
+    public static final String GZIP = "gzip";
+
+    private int threshold;
+
+    /**
+     * Creates a new GZipFilter
+     * 
+     * @param threshold - minimum size in bytes of a request body to be compressed
+     */
+    public GZipFilter(int threshold) {
+        super();
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext) throws IOException {
+        requestContext.getHeaders().putSingle(HttpHeaders.ACCEPT_ENCODING, GZIP);
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        OutputStream out = context.getOutputStream();
+        ThresholdOutputStream thresholdStream = new ThresholdOutputStream(context, out);
+        context.setOutputStream(thresholdStream);
+        context.proceed();
+        thresholdStream.finish();
+        context.setOutputStream(out);
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext)
+            throws IOException {
+        String encoding = responseContext.getHeaderString(HttpHeaders.CONTENT_ENCODING);
+        if (encoding != null && encoding.trim().equalsIgnoreCase(GZIP) && responseContext.hasEntity()) {
+            responseContext.setEntityStream(new GZIPInputStream(responseContext.getEntityStream()));
+            responseContext.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+            responseContext.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+        }
+    }
+
+    /**
+     * Buffers the request body until the threshold is reached. Then the headers
+     * are switched to gzip and the buffer and all following data is compressed
+     * directly into the original stream. So a large streamed body is never held
+     * in memory as a whole.
+     */
+    private class ThresholdOutputStream extends OutputStream {
+        private WriterInterceptorContext context;
+        private OutputStream out;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private GZIPOutputStream gzip = null;
+
+        ThresholdOutputStream(WriterInterceptorContext context, OutputStream out) {
+            this.context = context;
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (gzip != null) {
+                gzip.write(b);
+                return;
+            }
+            buffer.write(b);
+            checkThreshold();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (gzip != null) {
+                gzip.write(b, off, len);
+                return;
+            }
+            buffer.write(b, off, len);
+            checkThreshold();
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // a flush of the buffered part is deferred until the threshold is known
+            if (gzip != null) {
+                gzip.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            // the original stream is closed by the JAX-RS runtime
+        }
+
+        /**
+         * Switches to gzip compression as soon as the threshold is reached. The
+         * headers are not yet committed as long as nothing was written to the
+         * original stream.
+         */
+        private void checkThreshold() throws IOException {
+            if (buffer.size() >= threshold) {
+                context.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, GZIP);
+                context.getHeaders().remove(HttpHeaders.CONTENT_LENGTH);
+                gzip = new GZIPOutputStream(out, true);
+                buffer.writeTo(gzip);
+                buffer = null;
+            }
+        }
+
+        /**
+         * Writes the remaining data. A body smaller than the threshold is send
+         * uncompressed.
+         */
+        void finish() throws IOException {
+            if (gzip != null) {
+                gzip.finish();
+            } else {
+                buffer.writeTo(out);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.core;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * The MLCircuitBreaker tracks the health of a single ML service endpoint.
+ * <p>
+ * The breaker is CLOSED as long as the endpoint responds. After a number of
+ * consecutive failures (threshold) the breaker switches into the state OPEN and
+ * all requests fail fast. After the open delay a single caller can start a
+ * health probe. During the probe the breaker is HALF_OPEN. If the probe
+ * succeeds the breaker is CLOSED again, otherwise it is reopened for the next
+ * delay.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLCircuitBreaker {
+    private static Logger logger = Logger.getLogger(MLCircuitBreaker.class.getName());
+
+    public static final int STATE_CLOSED = 0;
+    public static final int STATE_OPEN = 1;
+    public static final int STATE_HALF_OPEN = 2;
+
+    public static final int DEFAULT_THRESHOLD = 5;
+    public static final long DEFAULT_DELAY = 30000;
+
+    private static final BreakerState CLOSED = new BreakerState(STATE_CLOSED, 0);
+    private static final BreakerState HALF_OPEN = new BreakerState(STATE_HALF_OPEN, 0);
+
+    private String name;
+    private int threshold;
+    private long delay;
+    // the state and the open timestamp are always published together
+    private AtomicReference<BreakerState> state = new AtomicReference<BreakerState>(CLOSED);
+    private AtomicInteger failures = new AtomicInteger();
+    private AtomicLong openCount = new AtomicLong();
+
+    public MLCircuitBreaker(String name) {
+        this(name, DEFAULT_THRESHOLD, DEFAULT_DELAY);
+    }
+
+    public MLCircuitBreaker(String name, int threshold, long delay) {
+        super();
+        this.name = name;
+        this.threshold = threshold > 0 ? threshold : DEFAULT_THRESHOLD;
+        this.delay = delay >= 0 ? delay : DEFAULT_DELAY;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    public long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Returns the current state (STATE_CLOSED, STATE_OPEN or STATE_HALF_OPEN)
+     * 
+     * @return
+     */
+    public int getState() {
+        return state.get().state;
+    }
+
+    /**
+     * Returns the number of consecutive failures.
+     * 
+     * @return
+     */
+    public int getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Returns how often the breaker was opened.
+     * 
+     * @return
+     */
+    public long getOpenCount() {
+        return openCount.get();
+    }
+
+    /**
+     * Returns true if requests are allowed.
+     * 
+     * @return
+     */
+    public boolean isClosed() {
+        return state.get() == CLOSED;
+    }
+
+    /**
+     * Switches an open breaker into the state HALF_OPEN if the open delay has
+     * expired. Only one caller wins, so only one health probe is started at a
+     * time.
+     * 
+     * @return true if the caller should probe the endpoint
+     */
+    public boolean tryStartProbe() {
+        BreakerState current = state.get();
+        return current.state == STATE_OPEN && System.currentTimeMillis() - current.openedAt >= delay
+                && state.compareAndSet(current, HALF_OPEN);
+    }
+
+    /**
+     * Records a successful request or probe and closes the breaker.
+     */
+    public void recordSuccess() {
+        failures.set(0);
+        if (state.getAndSet(CLOSED) != CLOSED) {
+            logger.info("......circuit breaker for " + name + " closed");
+        }
+    }
+
+    /**
+     * Records a failed request or probe. The breaker is opened if the threshold is
+     * reached or if a health probe failed.
+     */
+    public void recordFailure() {
+        int count = failures.incrementAndGet();
+        while (true) {
+            BreakerState current = state.get();
+            if (current == HALF_OPEN || (current == CLOSED && count >= threshold)) {
+                if (!state.compareAndSet(current, new BreakerState(STATE_OPEN, System.currentTimeMillis()))) {
+                    // state changed concurrently
+                    continue;
+                }
+                openCount.incrementAndGet();
+                logger.warning("......circuit breaker for " + name + " opened after " + count + " failures");
+            }
+            return;
+        }
+    }
+
+    /**
+     * Immutable state of the breaker together with the time it was opened.
+     */
+    private static class BreakerState {
+        private final int state;
+        private final long openedAt;
+
+        BreakerState(int state, long openedAt) {
+            this.state = state;
+            this.openedAt = openedAt;
+        }
+    }
+
+}
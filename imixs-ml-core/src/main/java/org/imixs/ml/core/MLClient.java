@@ -23,15 +23,30 @@
 package org.imixs.ml.core;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.logging.Logger;
 
+import jakarta.ws.rs.ProcessingException;
 import jakarta.ws.rs.client.Client;
 import jakarta.ws.rs.client.ClientBuilder;
 import jakarta.ws.rs.client.Entity;
-import jakarta.ws.rs.client.Invocation;
-import jakarta.ws.rs.client.WebTarget;
-import jakarta.ws.rs.core.GenericEntity;
+import jakarta.ws.rs.client.InvocationCallback;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.core.Response.Status.Family;
@@ -44,24 +59,331 @@ import org.imixs.ml.xml.XMLTrainingData;
  * The MLClient provides a Jax-RS client to post training data and analyse data
  * objects.
  * <p>
- * The MLClient can be constructed by a given service endpoint.
- * 
+ * The MLClient can be constructed by a given service endpoint. The client holds
+ * one long-lived Jax-RS client instance which is shared by all requests. The
+ * instance is thread-safe and reuses keep-alive connections to the service
+ * endpoint, so a request does not need a new TCP/TLS handshake. The number of
+ * concurrent connections is limited by the pool size per replica.
+ * <p>
+ * A MLClient should be obtained from the {@link MLClientRegistry} which manages
+ * one instance per service endpoint. The method {@link #close()} releases all
+ * connections. A closed MLClient reopens a new connection pool with the next
+ * request.
+ * <p>
+ * The asynchronous methods return a CompletionStage and do not block the
+ * calling thread. The asynchronous requests share the pool size limit with the
+ * synchronous requests. If all connections are in use, an asynchronous request
+ * is queued and sent as soon as a connection of a suitable replica becomes
+ * free. Queued requests are dispatched in order, but a request waiting for a
+ * busy replica does not block requests which can be sent to another replica.
+ * So a caller can pipeline many documents without overloading the ML service.
+ * <p>
+ * Each request is bounded by a connect timeout, a read timeout and an overall
+ * deadline including all retries. Analyse and validate requests are idempotent
+ * and are retried with a jittered exponential backoff if the ML service is not
+ * reachable or responds with a server error. Training requests are never
+ * retried. A {@link MLCircuitBreaker} lets all requests fail fast while the ML
+ * service is unhealthy and probes the '/health' endpoint of the service before
+ * new requests are accepted again. The synchronous methods return null if a
+ * request failed.
+ * <p>
+ * The service endpoint can be a comma separated list of ML service replicas.
+ * In this case analyse and validate requests are send to the available replica
+ * with the least outstanding requests. A replica with an open circuit breaker
+ * is removed from the load balancing until a health probe succeeds. Training
+ * requests for a model are always send to the same replica so that the updates
+ * of a model are not split across replicas.
+ * <p>
+ * Optional analyse requests can be hedged. If the first replica has not
+ * answered within the configured latency percentile of the last analyse
+ * requests, a duplicate request is send to a second replica. The first
+ * successful response wins and the other request is cancelled.
+ * <p>
+ * Optional request bodies above a size threshold are compressed with gzip. If
+ * compression is enabled, the client also accepts gzip compressed responses.
+ * <p>
+ * If {@link MLClientMetrics} are set, the latency, payload sizes, status codes
+ * and errors of each request are recorded per endpoint, model and operation.
+ * <p>
+ * Training and validation data is streamed as JSON into the request body with
+ * chunked transfer encoding, so a batch is never serialized into memory as a
+ * whole.
  * 
- * @version 1.0
+ * @version 1.2
  * @author rsoika
  */
 public class MLClient {
     private static Logger logger = Logger.getLogger(MLClient.class.getName());
 
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final long DEFAULT_READ_TIMEOUT = 60000;
+    public static final long DEFAULT_DEADLINE = 120000;
+    public static final int DEFAULT_RETRIES = 2;
+    public static final long DEFAULT_RETRY_DELAY = 500;
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95;
+    // minimum number of latencies required to compute the hedge delay
+    public static final int HEDGE_MIN_SAMPLES = 20;
+    public static final long HEDGE_MIN_DELAY = 10;
+    // client property selecting the transfer encoding of request entities
+    public static final String PROPERTY_ENTITY_PROCESSING = "jersey.config.client.request.entityProcessing";
+
     private String serviceEndpoint = null;
+    private int poolSize;
+    private Queue<MLRequest<?>> pendingRequests = new ConcurrentLinkedQueue<MLRequest<?>>();
+    private volatile Client client = null;
+    private volatile long lastAccess;
+    private long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private long readTimeout = DEFAULT_READ_TIMEOUT;
+    private long deadline = DEFAULT_DEADLINE;
+    private int retries = DEFAULT_RETRIES;
+    private long retryDelay = DEFAULT_RETRY_DELAY;
+    private List<MLReplica> replicas = new ArrayList<MLReplica>();
+    private AtomicInteger nextReplica = new AtomicInteger();
+    private boolean hedging = false;
+    private double hedgePercentile = DEFAULT_HEDGE_PERCENTILE;
+    private MLLatencyStatistic analyseLatencies = new MLLatencyStatistic();
+    private int gzipThreshold = -1;
+    private MLClientMetrics metrics = null;
 
     public MLClient(String serviceEndpoint) {
+        this(serviceEndpoint, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * Creates a new MLClient for a service endpoint or a comma separated list of
+     * service endpoint replicas. The pool size limits the concurrent connections
+     * per replica.
+     * 
+     * @param serviceEndpoint - the ml API endpoint(s)
+     * @param poolSize
+     */
+    public MLClient(String serviceEndpoint, int poolSize) {
         super();
-        // the service endpoint must not end with a /
-        if (serviceEndpoint.endsWith("/")) {
-            serviceEndpoint = serviceEndpoint.substring(0, serviceEndpoint.length() - 1);
+        this.serviceEndpoint = normalizeServiceEndpoint(serviceEndpoint);
+        if (poolSize <= 0) {
+            poolSize = DEFAULT_POOL_SIZE;
         }
-        this.serviceEndpoint = serviceEndpoint;
+        for (String endpoint : this.serviceEndpoint.split(",")) {
+            replicas.add(new MLReplica(endpoint, poolSize));
+        }
+        this.poolSize = poolSize * replicas.size();
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Normalizes a service endpoint or a comma separated list of endpoints. Empty
+     * entries are removed and an endpoint must not end with a /
+     * 
+     * @param serviceEndpoint
+     * @return normalized service endpoint
+     */
+    public static String normalizeServiceEndpoint(String serviceEndpoint) {
+        StringBuilder result = new StringBuilder();
+        for (String endpoint : serviceEndpoint.split(",")) {
+            endpoint = endpoint.trim();
+            // the service endpoint must not end with a /
+            if (endpoint.endsWith("/")) {
+                endpoint = endpoint.substring(0, endpoint.length() - 1);
+            }
+            if (!endpoint.isEmpty()) {
+                if (result.length() > 0) {
+                    result.append(",");
+                }
+                result.append(endpoint);
+            }
+        }
+        return result.toString();
+    }
+
+    public String getServiceEndpoint() {
+        return serviceEndpoint;
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    public long getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * Sets the connect timeout in milliseconds. The timeout is applied to the
+     * Jax-RS client created with the next request after the client was closed.
+     * 
+     * @param connectTimeout - 0 means no timeout
+     */
+    public void setConnectTimeout(long connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public long getReadTimeout() {
+        return readTimeout;
+    }
+
+    /**
+     * Sets the read timeout in milliseconds. The timeout is applied to the Jax-RS
+     * client created with the next request after the client was closed.
+     * 
+     * @param readTimeout - 0 means no timeout
+     */
+    public void setReadTimeout(long readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Sets the overall time in milliseconds a request may take including waiting
+     * for a free connection and all retries.
+     * 
+     * @param deadline - 0 means no deadline
+     */
+    public void setDeadline(long deadline) {
+        this.deadline = deadline;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    /**
+     * Sets the maximum number of retries for idempotent requests.
+     * 
+     * @param retries
+     */
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public long getRetryDelay() {
+        return retryDelay;
+    }
+
+    /**
+     * Sets the base delay in milliseconds for the exponential backoff between
+     * retries.
+     * 
+     * @param retryDelay
+     */
+    public void setRetryDelay(long retryDelay) {
+        this.retryDelay = retryDelay;
+    }
+
+    public boolean isHedging() {
+        return hedging;
+    }
+
+    /**
+     * Enables hedged analyse requests. Hedging requires at least two replicas.
+     * 
+     * @param hedging
+     */
+    public void setHedging(boolean hedging) {
+        this.hedging = hedging;
+    }
+
+    public double getHedgePercentile() {
+        return hedgePercentile;
+    }
+
+    /**
+     * Sets the latency percentile of the last analyse requests after which a
+     * hedged request is send (e.g. 95).
+     * 
+     * @param hedgePercentile
+     */
+    public void setHedgePercentile(double hedgePercentile) {
+        this.hedgePercentile = hedgePercentile;
+    }
+
+    public int getGzipThreshold() {
+        return gzipThreshold;
+    }
+
+    /**
+     * Sets the minimum size in bytes of a request body to be send gzip
+     * compressed. A negative value disables compression. The threshold is applied
+     * to the Jax-RS client created with the next request after the client was
+     * closed.
+     * 
+     * @param gzipThreshold
+     */
+    public void setGzipThreshold(int gzipThreshold) {
+        this.gzipThreshold = gzipThreshold;
+    }
+
+    public MLClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Sets the metrics recording the latency, payload sizes, status codes and
+     * errors of each request. The metrics must be set before the first request is
+     * send. If no metrics are set nothing is recorded.
+     * 
+     * @param metrics
+     */
+    public void setMetrics(MLClientMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the latencies of the last analyse requests.
+     * 
+     * @return
+     */
+    public MLLatencyStatistic getAnalyseLatencies() {
+        return analyseLatencies;
+    }
+
+    /**
+     * Returns the delay in milliseconds after which a hedged analyse request is
+     * send, or -1 if not enough latencies are recorded yet.
+     * 
+     * @return
+     */
+    public long getHedgeDelay() {
+        if (analyseLatencies.getCount() < HEDGE_MIN_SAMPLES) {
+            return -1;
+        }
+        return Math.max(HEDGE_MIN_DELAY, analyseLatencies.getPercentile(hedgePercentile));
+    }
+
+    /**
+     * Returns the replicas of the service endpoint.
+     * 
+     * @return
+     */
+    public List<MLReplica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Returns the time in milliseconds of the last request.
+     * 
+     * @return
+     */
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    /**
+     * Returns true if no request is currently running or waiting for a
+     * connection.
+     * 
+     * @return
+     */
+    public boolean isIdle() {
+        for (MLReplica replica : replicas) {
+            if (replica.getAvailableConnections() < replica.getPoolSize()) {
+                return false;
+            }
+        }
+        return pendingRequests.isEmpty();
     }
 
     /**
@@ -72,35 +394,44 @@ public class MLClient {
      * @param options - an optional query parameter
      */
     public String postTrainingData(XMLTrainingData trainingData, String model, String options) {
-
-        logger.fine("......sending new training data object...");
-        Client client = ClientBuilder.newClient();
-        String uri=serviceEndpoint + "/training/" + model;
-        if (options!=null && !options.isEmpty()) {
-            if (uri.contains("?")) {
-                uri=uri+"&";
-            } else {
-                uri=uri+"?";
-            }
-            uri=uri+options;
-        }
-        WebTarget webTarget = client.target(uri);
-
-        Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON);
-
         // build an array with one training data object
         List<XMLTrainingData> dataset = new ArrayList<XMLTrainingData>();
         dataset.add(trainingData);
+        return postTrainingDataBatch(dataset, model, options);
+    }
 
-        GenericEntity<List<XMLTrainingData>> list = new GenericEntity<List<XMLTrainingData>>(dataset) {
-        };
+    /**
+     * This method posts a list of Imixs-ML training data objects in one request to
+     * a ML service endpoint. The model is updated only once for the whole batch.
+     * 
+     * @param trainingData - list of training data objects
+     * @param model        - the model name
+     * @param options      - an optional query parameter
+     */
+    public String postTrainingDataBatch(List<XMLTrainingData> trainingData, String model, String options) {
+        return await(postTrainingDataBatchAsync(trainingData, model, options));
+    }
 
-        Response response = invocationBuilder.post(Entity.entity(list, MediaType.APPLICATION_JSON));
-        String output = response.readEntity(String.class);
-        return output;
-       
+    /**
+     * This method posts a list of Imixs-ML training data objects asynchronous to a
+     * ML service endpoint. The returned CompletionStage is completed with the
+     * response data.
+     * <p>
+     * A training request updates the model and is therefore never retried. All
+     * requests for a model are send to the same replica.
+     * 
+     * @param trainingData - list of training data objects
+     * @param model        - the model name
+     * @param options      - an optional query parameter
+     * @return CompletionStage providing the response data
+     */
+    public CompletionStage<String> postTrainingDataBatchAsync(List<XMLTrainingData> trainingData, String model,
+            String options) {
+        logger.fine("......sending " + trainingData.size() + " training data objects...");
+        return postAsync(MLClientMetrics.OPERATION_TRAINING, model, buildTrainingPath(model, options),
+                buildTrainingEntity(trainingData), response -> response.readEntity(String.class), false, model);
     }
-    
+
     /**
      * This method posts a Imixs-ML json training string to a ML service endpoint 
      * for validation only. Not model update is performed. 
@@ -110,26 +441,26 @@ public class MLClient {
      * @param options - an optional query parameter
      */
     public String postValidateData(XMLTrainingData trainingData, String model) {
+        return await(postValidateDataAsync(trainingData, model));
+    }
 
+    /**
+     * This method posts a Imixs-ML training data object asynchronous to a ML
+     * service endpoint for validation only. The returned CompletionStage is
+     * completed with the response data.
+     * 
+     * @param trainingData - the training data object
+     * @param model        - the model name
+     * @return CompletionStage providing the response data
+     */
+    public CompletionStage<String> postValidateDataAsync(XMLTrainingData trainingData, String model) {
         logger.fine("......sending new training data object...");
-        Client client = ClientBuilder.newClient();
-        String uri=serviceEndpoint + "/validate/" + model;
-        WebTarget webTarget = client.target(uri);
-
-        Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON);
-
         // build an array with one training data object
         List<XMLTrainingData> dataset = new ArrayList<XMLTrainingData>();
         dataset.add(trainingData);
-
-        GenericEntity<List<XMLTrainingData>> list = new GenericEntity<List<XMLTrainingData>>(dataset) {
-        };
-
-        Response response = invocationBuilder.post(Entity.entity(list, MediaType.APPLICATION_JSON));
-        String output = response.readEntity(String.class);
-        return output;
-       
-    }    
+        return postAsync(MLClientMetrics.OPERATION_VALIDATE, model, "/validate/" + model,
+                buildTrainingEntity(dataset), response -> response.readEntity(String.class), true, null);
+    }
 
     /**
      * This method posts a Imixs-ML json training string to the ML service endpoint.
@@ -143,32 +474,648 @@ public class MLClient {
      * @return list of XMLAnalyseEntity
      **/
     public XMLAnalyseResult postAnalyseData(String text, String model) {
+        return await(postAnalyseDataAsync(text, model));
+    }
 
+    /**
+     * This method posts a text asynchronous to the ML service endpoint. The
+     * returned CompletionStage is completed with the XMLAnalyseResult or with null
+     * if the ML service returned an error status.
+     * 
+     * @param text  - text to be analyzed
+     * @param model - the model name
+     * @return CompletionStage providing the XMLAnalyseResult
+     */
+    public CompletionStage<XMLAnalyseResult> postAnalyseDataAsync(String text, String model) {
         logger.fine("......sending analyse data object...");
         XMLAnalyseData atext = new XMLAnalyseData(text);
-        Client client = ClientBuilder.newClient();
-        // client.register(RedirectFilterWorkAround.class);
+        MLRequest<XMLAnalyseResult> request = new MLRequest<XMLAnalyseResult>(MLClientMetrics.OPERATION_ANALYSE,
+                model, "/analyse/" + model, Entity.entity(atext, MediaType.APPLICATION_JSON), response -> {
+                    // in case of successful response we extract the XMLAnalyseEntity objects
+                    if (response.getStatusInfo().getFamily() == Family.SUCCESSFUL) {
+                        logger.finest("......POST request successfull (" + response.getStatus() + ")");
+                        return response.readEntity(XMLAnalyseResult.class);
+                    }
+                    logger.warning("......POST request failed: " + response.getStatus());
+                    return null;
+                }, true, null);
+        request.latencies = analyseLatencies;
+        request.start();
+        long hedgeDelay = getHedgeDelay();
+        if (!hedging || replicas.size() < 2 || hedgeDelay < 0) {
+            return request.result;
+        }
+        return hedge(request, hedgeDelay);
+    }
+
+    /**
+     * Closes the underlying Jax-RS client and releases all pooled connections. The
+     * MLClient can still be used after this method was called. In this case a new
+     * Jax-RS client is created with the next request.
+     */
+    public synchronized void close() {
+        if (client != null) {
+            logger.fine("......closing ml client for " + serviceEndpoint);
+            client.close();
+            client = null;
+        }
+    }
+
+    /**
+     * Returns the shared Jax-RS client instance. The client is created lazily with
+     * the first request.
+     * 
+     * @return Jax-RS client
+     */
+    protected Client getClient() {
+        Client result = client;
+        if (result == null) {
+            synchronized (this) {
+                result = client;
+                if (result == null) {
+                    logger.fine("......create new ml client for " + serviceEndpoint + " (pool size=" + poolSize
+                            + ")");
+                    ClientBuilder builder = ClientBuilder.newBuilder();
+                    if (connectTimeout > 0) {
+                        builder.connectTimeout(connectTimeout, TimeUnit.MILLISECONDS);
+                    }
+                    if (readTimeout > 0) {
+                        builder.readTimeout(readTimeout, TimeUnit.MILLISECONDS);
+                    }
+                    if (gzipThreshold >= 0) {
+                        builder.register(new GZipFilter(gzipThreshold));
+                    }
+                    if (metrics != null) {
+                        builder.register(new MLMetricsFilter());
+                    }
+                    // send streamed training data with chunked transfer encoding instead of
+                    // buffering the body to compute the content length
+                    builder.property(PROPERTY_ENTITY_PROCESSING, "CHUNKED");
+                    result = builder.build();
+                    // client.register(RedirectFilterWorkAround.class);
+                    client = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Helper method to wait for the result of an asynchronous request. The method
+     * returns null if the request failed.
+     * 
+     * @param stage
+     * @return response data
+     */
+    private <T> T await(CompletionStage<T> stage) {
+        CompletableFuture<T> future = stage.toCompletableFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            logger.warning("......request to " + serviceEndpoint + " interrupted");
+        } catch (ExecutionException | CancellationException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.warning("......request to " + serviceEndpoint + " failed: " + cause);
+        }
+        return null;
+    }
+
+    /**
+     * Helper method to post an entity asynchronous to the given resource path of a
+     * replica. The request is queued until a connection of the pool is free. The
+     * response is converted by the given reader function and always closed so that
+     * the connection can be reused.
+     * <p>
+     * If the returned CompletionStage is cancelled, a queued request is skipped and
+     * a running request is aborted.
+     * 
+     * @param operation  - the operation recorded by the metrics
+     * @param model      - the model name
+     * @param path       - resource path
+     * @param entity
+     * @param reader     - function to read the response
+     * @param idempotent - true if the request can be retried
+     * @param pinKey     - optional key pinning the request to one replica
+     * @return CompletionStage providing the response data
+     */
+    private <T> CompletionStage<T> postAsync(String operation, String model, String path, Entity<?> entity,
+            Function<Response, T> reader, boolean idempotent, String pinKey) {
+        MLRequest<T> request = new MLRequest<T>(operation, model, path, entity, reader, idempotent, pinKey);
+        request.start();
+        return request.result;
+    }
+
+    /**
+     * Hedges a running request. If the request is not completed after the given
+     * delay, a duplicate request is send to another available replica. The first
+     * successful response completes the returned CompletionStage and the other
+     * request is cancelled. A null result of a failed response does not complete
+     * the CompletionStage while another request is running. The CompletionStage
+     * fails or provides null only if all requests fail.
+     * 
+     * @param primary - the running request
+     * @param delay   - hedge delay in milliseconds
+     * @return CompletionStage providing the response data
+     */
+    private <T> CompletionStage<T> hedge(MLRequest<T> primary, long delay) {
+        CompletableFuture<T> result = new CompletableFuture<T>();
+        List<MLRequest<T>> requests = new CopyOnWriteArrayList<MLRequest<T>>();
+        AtomicInteger pending = new AtomicInteger(1);
+        AtomicBoolean failedResponse = new AtomicBoolean(false);
+        BiConsumer<T, Throwable> onComplete = (data, e) -> {
+            if (e == null && data != null) {
+                result.complete(data);
+                return;
+            }
+            // a null result is a failed response and must not cancel the other request
+            if (e == null) {
+                failedResponse.set(true);
+            }
+            if (pending.decrementAndGet() == 0) {
+                if (failedResponse.get()) {
+                    result.complete(null);
+                } else {
+                    result.completeExceptionally(e);
+                }
+            }
+        };
+        // cancel all requests still running if the first response was received
+        result.whenComplete((data, e) -> {
+            for (MLRequest<T> request : requests) {
+                request.result.cancel(true);
+            }
+        });
+        requests.add(primary);
+        primary.result.whenComplete(onComplete);
+
+        CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(() -> {
+            MLReplica replica = primary.currentReplica;
+            if (result.isDone() || countAvailableReplicas() < 2) {
+                return;
+            }
+            logger.fine("......hedge request " + primary.path + " after " + delay + "ms");
+            pending.incrementAndGet();
+            MLRequest<T> hedged = new MLRequest<T>(primary.operation, primary.model, primary.path,
+                    primary.entity, primary.reader, true, null);
+            hedged.latencies = primary.latencies;
+            // the hedged request must not use the replica of the first request
+            hedged.currentReplica = replica;
+            requests.add(hedged);
+            hedged.start();
+            hedged.result.whenComplete(onComplete);
+            if (result.isDone()) {
+                hedged.result.cancel(true);
+            }
+        });
+        return result;
+    }
 
-        WebTarget webTarget = client.target(serviceEndpoint + "/analyse/" + model);
-        Invocation.Builder invocationBuilder = webTarget.request(MediaType.APPLICATION_JSON);
-        Response response = invocationBuilder.post(Entity.entity(atext, MediaType.APPLICATION_JSON));
+    /**
+     * Returns true if at least one replica has a closed circuit breaker. If all
+     * circuit breakers are open, requests fail fast until a health probe closes a
+     * circuit breaker again.
+     * 
+     * @return true if the ML service is available
+     */
+    public boolean isAvailable() {
+        return countAvailableReplicas() > 0;
+    }
 
-        // in case of successful response we extract the XMLAnalyseEntity objects
-        if (response.getStatusInfo().getFamily() == Family.SUCCESSFUL) {
-            logger.finest("......POST request successfull (" + response.getStatus() + ")");
-            // Now extract the List of XMLAnalyseEntity from the response object....
-            // List<XMLAnalyseEntity> entities = response.readEntity(new
-            // GenericType<List<XMLAnalyseEntity>>() {
-            //  });
-            XMLAnalyseResult resultObj = response.readEntity(XMLAnalyseResult.class);
+    /**
+     * Returns the number of replicas with a closed circuit breaker.
+     * 
+     * @return
+     */
+    private int countAvailableReplicas() {
+        int count = 0;
+        for (MLReplica replica : replicas) {
+            if (replica.isAvailable()) {
+                count++;
+            }
+        }
+        return count;
+    }
 
-            return resultObj;
-        } else {
-            logger.warning("......POST request failed: " + response.getStatus());
-            return null;
+    /**
+     * Sends queued asynchronous requests in order as long as connections of a
+     * suitable replica are free. A request waiting for a busy replica is skipped,
+     * so it does not block requests which can be sent to another replica. A
+     * request fails if no replica is available anymore, e.g. if the circuit
+     * breakers of all replicas are open.
+     */
+    private void sendPendingRequests() {
+        startHealthProbes();
+        List<Runnable> ready = new ArrayList<Runnable>();
+        // connections are only acquired within this block
+        synchronized (pendingRequests) {
+            Iterator<MLRequest<?>> iterator = pendingRequests.iterator();
+            while (iterator.hasNext()) {
+                if (!hasAvailableConnections() && countAvailableReplicas() > 0) {
+                    // all connections are in use
+                    break;
+                }
+                MLRequest<?> request = iterator.next();
+                if (request.result.isDone()) {
+                    // cancelled while waiting for a connection
+                    iterator.remove();
+                    continue;
+                }
+                // avoid the replica of a failed attempt
+                MLReplica replica = selectReplica(request.pinKey, request.currentReplica, true);
+                if (replica != null && replica.tryAcquireConnection()) {
+                    iterator.remove();
+                    ready.add(() -> request.send(replica));
+                } else if (replica == null
+                        && selectReplica(request.pinKey, request.currentReplica, false) == null) {
+                    iterator.remove();
+                    ready.add(request::failCircuitBreaker);
+                }
+            }
+        }
+        for (Runnable request : ready) {
+            lastAccess = System.currentTimeMillis();
+            request.run();
         }
+    }
 
+    /**
+     * Returns true if at least one available replica has a free connection.
+     * 
+     * @return
+     */
+    private boolean hasAvailableConnections() {
+        for (MLReplica replica : replicas) {
+            if (replica.isAvailable() && replica.getAvailableConnections() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Starts health probes for all replicas with an expired open circuit breaker.
+     */
+    private void startHealthProbes() {
+        for (MLReplica replica : replicas) {
+            if (replica.getCircuitBreaker().tryStartProbe()) {
+                probeHealth(replica);
+            }
+        }
+    }
+
+    /**
+     * Selects the replica for the next request. A request with a pin key is always
+     * send to the same replica. Otherwise the available replica with the least
+     * outstanding requests is selected. Ties are resolved round robin.
+     * 
+     * @param pinKey            - optional key pinning the request to one replica
+     * @param exclude           - optional replica to be avoided, e.g. after a
+     *                          failed attempt
+     * @param requireConnection - if true only replicas with a free connection are
+     *                          selected
+     * @return replica or null if no replica is available
+     */
+    private MLReplica selectReplica(String pinKey, MLReplica exclude, boolean requireConnection) {
+        if (pinKey != null) {
+            MLReplica replica = replicas.get(Math.floorMod(pinKey.hashCode(), replicas.size()));
+            return isSelectable(replica, requireConnection) ? replica : null;
+        }
+        MLReplica result = null;
+        boolean other = false;
+        int size = replicas.size();
+        int start = Math.floorMod(nextReplica.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            MLReplica replica = replicas.get((start + i) % size);
+            if (replica == exclude || !replica.isAvailable()) {
+                continue;
+            }
+            other = true;
+            if (!isSelectable(replica, requireConnection)) {
+                continue;
+            }
+            if (result == null || replica.getOutstanding() < result.getOutstanding()) {
+                result = replica;
+            }
+        }
+        // the excluded replica is only used if no other replica is available
+        if (!other && exclude != null && isSelectable(exclude, requireConnection)) {
+            result = exclude;
+        }
+        return result;
+    }
+
+    private static boolean isSelectable(MLReplica replica, boolean requireConnection) {
+        return replica.isAvailable() && (!requireConnection || replica.getAvailableConnections() > 0);
+    }
+
+    /**
+     * Sends an asynchronous GET request to the '/health' endpoint of a replica. The
+     * result closes or reopens the circuit breaker of the replica.
+     * 
+     * @param replica
+     */
+    private void probeHealth(MLReplica replica) {
+        MLCircuitBreaker circuitBreaker = replica.getCircuitBreaker();
+        logger.info("......probe " + replica.getServiceEndpoint() + "/health ...");
+        try {
+            getClient().target(replica.getServiceEndpoint() + "/health").request(MediaType.APPLICATION_JSON).async()
+                    .get(new InvocationCallback<Response>() {
+                        @Override
+                        public void completed(Response response) {
+                            try {
+                                if (response.getStatusInfo().getFamily() == Family.SUCCESSFUL) {
+                                    circuitBreaker.recordSuccess();
+                                } else {
+                                    circuitBreaker.recordFailure();
+                                }
+                            } finally {
+                                response.close();
+                            }
+                        }
+
+                        @Override
+                        public void failed(Throwable throwable) {
+                            circuitBreaker.recordFailure();
+                        }
+                    });
+        } catch (RuntimeException e) {
+            circuitBreaker.recordFailure();
+        }
+    }
+
+    /**
+     * Builds the training resource path for a model with optional query
+     * parameters.
+     * 
+     * @param model
+     * @param options - an optional query parameter
+     * @return resource path
+     */
+    private String buildTrainingPath(String model, String options) {
+        String uri="/training/" + model;
+        if (options!=null && !options.isEmpty()) {
+            if (uri.contains("?")) {
+                uri=uri+"&";
+            } else {
+                uri=uri+"?";
+            }
+            uri=uri+options;
+        }
+        return uri;
+    }
+
+    /**
+     * Builds a json entity from a list of training data objects. The entity is
+     * streamed document by document into the request body.
+     * 
+     * @param trainingData
+     * @return entity
+     */
+    private Entity<TrainingDataStreamingOutput> buildTrainingEntity(List<XMLTrainingData> trainingData) {
+        return Entity.entity(new TrainingDataStreamingOutput(trainingData), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Returns the error type of a failed request recorded by the metrics.
+     * 
+     * @param throwable
+     * @return simple class name of the root cause
+     */
+    private static String getErrorType(Throwable throwable) {
+        Throwable cause = throwable;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Closes the response and returns the connection into the pool. The
+     * connection is only released once per attempt.
+     * 
+     * @param released - release flag of the attempt
+     * @param replica  - the replica of the attempt
+     * @param response
+     */
+    private void releaseConnection(AtomicBoolean released, MLReplica replica, Response response) {
+        try {
+            if (response != null) {
+                response.close();
+            }
+        } finally {
+            if (released.compareAndSet(false, true)) {
+                replica.finishRequest();
+                lastAccess = System.currentTimeMillis();
+                replica.releaseConnection();
+                // a free connection can now be used by a queued asynchronous request
+                sendPendingRequests();
+            }
+        }
+    }
+
+    /**
+     * A MLRequest holds the state of a single asynchronous request over all its
+     * attempts.
+     */
+    private class MLRequest<T> {
+        private String operation;
+        private String model;
+        private String path;
+        private Entity<?> entity;
+        private Function<Response, T> reader;
+        private boolean idempotent;
+        private String pinKey;
+        private CompletableFuture<T> result = new CompletableFuture<T>();
+        private long deadlineAt;
+        private volatile int attempt = 0;
+        private volatile Future<Response> current = null;
+        private volatile AtomicBoolean currentReleased = null;
+        private volatile MLReplica currentReplica = null;
+        // optional statistic recording the latency of successful attempts
+        private MLLatencyStatistic latencies = null;
+
+        MLRequest(String operation, String model, String path, Entity<?> entity, Function<Response, T> reader,
+                boolean idempotent, String pinKey) {
+            this.operation = operation;
+            this.model = model;
+            this.path = path;
+            this.entity = entity;
+            this.reader = reader;
+            this.idempotent = idempotent;
+            this.pinKey = pinKey;
+        }
+
+        /**
+         * Starts the first attempt. The overall deadline is applied to the result.
+         */
+        void start() {
+            if (deadline > 0) {
+                deadlineAt = System.currentTimeMillis() + deadline;
+                result.orTimeout(deadline, TimeUnit.MILLISECONDS);
+            }
+            // abort a running attempt if the caller cancels or the deadline expires
+            result.whenComplete((data, e) -> {
+                if (e == null) {
+                    return;
+                }
+                pendingRequests.remove(this);
+                MLReplica replica = currentReplica;
+                if (e instanceof TimeoutException && replica != null) {
+                    logger.warning("......request to " + replica.getServiceEndpoint() + path
+                            + " exceeded deadline of " + deadline + "ms");
+                    replica.getCircuitBreaker().recordFailure();
+                    recordError(replica.getServiceEndpoint(), "timeout");
+                }
+                Future<Response> future = current;
+                if (future != null && future.cancel(true)) {
+                    releaseConnection(currentReleased, replica, null);
+                }
+            });
+            submit();
+        }
+
+        /**
+         * Queues the next attempt. If no replica is available, the request fails
+         * fast.
+         */
+        void submit() {
+            startHealthProbes();
+            if (selectReplica(pinKey, null, false) == null) {
+                failCircuitBreaker();
+                return;
+            }
+            pendingRequests.add(this);
+            sendPendingRequests();
+        }
+
+        void failCircuitBreaker() {
+            recordError(serviceEndpoint, "circuitbreaker");
+            result.completeExceptionally(new ProcessingException("circuit breaker open for " + serviceEndpoint));
+        }
+
+        /**
+         * Sends the request to the given replica. This method is called by
+         * sendPendingRequests after a connection of the replica was acquired.
+         * 
+         * @param replica
+         */
+        void send(MLReplica replica) {
+            AtomicBoolean released = new AtomicBoolean(false);
+            replica.startRequest();
+            if (result.isDone()) {
+                // cancelled while waiting for a connection
+                releaseConnection(released, replica, null);
+                return;
+            }
+            attempt++;
+            currentReleased = released;
+            currentReplica = replica;
+            String uri = replica.getServiceEndpoint() + path;
+            long started = System.currentTimeMillis();
+            MLMetricsFilter.ByteCount byteCount = new MLMetricsFilter.ByteCount();
+            try {
+                current = getClient().target(uri).request(MediaType.APPLICATION_JSON)
+                        .property(MLMetricsFilter.PROPERTY_BYTE_COUNT, byteCount).async()
+                        .post(entity, new InvocationCallback<Response>() {
+                            @Override
+                            public void completed(Response response) {
+                                try {
+                                    if (latencies != null
+                                            && response.getStatusInfo().getFamily() == Family.SUCCESSFUL) {
+                                        latencies.record(System.currentTimeMillis() - started);
+                                    }
+                                    onResponse(replica, response);
+                                } finally {
+                                    // the response body was read by onResponse
+                                    if (metrics != null) {
+                                        metrics.recordResponse(replica.getServiceEndpoint(), model, operation,
+                                                response.getStatus(), System.currentTimeMillis() - started,
+                                                byteCount.getRequestBytes(), byteCount.getResponseBytes());
+                                    }
+                                    releaseConnection(released, replica, response);
+                                }
+                            }
+
+                            @Override
+                            public void failed(Throwable throwable) {
+                                releaseConnection(released, replica, null);
+                                if (!(throwable instanceof CancellationException)) {
+                                    recordError(replica.getServiceEndpoint(), getErrorType(throwable));
+                                }
+                                onFailure(replica, throwable);
+                            }
+                        });
+            } catch (RuntimeException e) {
+                releaseConnection(released, replica, null);
+                recordError(replica.getServiceEndpoint(), getErrorType(e));
+                onFailure(replica, e);
+            }
+        }
+
+        void recordError(String endpoint, String error) {
+            if (metrics != null) {
+                metrics.recordError(endpoint, model, operation, error);
+            }
+        }
+
+        void onResponse(MLReplica replica, Response response) {
+            if (result.isDone()) {
+                return;
+            }
+            int status = response.getStatus();
+            if (response.getStatusInfo().getFamily() == Family.SERVER_ERROR) {
+                replica.getCircuitBreaker().recordFailure();
+                if (retry(replica, "status " + status)) {
+                    return;
+                }
+            } else {
+                replica.getCircuitBreaker().recordSuccess();
+            }
+            try {
+                result.complete(reader.apply(response));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        void onFailure(MLReplica replica, Throwable throwable) {
+            if (result.isDone()) {
+                // cancelled or deadline expired
+                return;
+            }
+            replica.getCircuitBreaker().recordFailure();
+            if (!retry(replica, throwable.getMessage())) {
+                logger.warning("......POST request to " + replica.getServiceEndpoint() + path + " failed: "
+                        + throwable.getMessage());
+                result.completeExceptionally(throwable);
+            }
+        }
+
+        /**
+         * Schedules a retry with a jittered exponential backoff. Only idempotent
+         * requests are retried and only if the retry can be started before the
+         * deadline expires.
+         * 
+         * @param replica - the replica of the failed attempt
+         * @param reason
+         * @return true if a retry was scheduled
+         */
+        boolean retry(MLReplica replica, String reason) {
+            if (!idempotent || attempt > retries || result.isDone()) {
+                return false;
+            }
+            long backoff = Math.max(1, retryDelay) << Math.min(attempt - 1, 16);
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            if (deadline > 0 && System.currentTimeMillis() + delay >= deadlineAt) {
+                return false;
+            }
+            logger.warning("......request to " + replica.getServiceEndpoint() + path + " failed (" + reason
+                    + ") - retry " + attempt + " in " + delay + "ms...");
+            CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS).execute(this::submit);
+            return true;
+        }
     }
 
-  
 }
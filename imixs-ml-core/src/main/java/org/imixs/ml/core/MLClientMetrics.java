@@ -0,0 +1,168 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.MetricUnits;
+import org.eclipse.microprofile.metrics.Tag;
+
+/**
+ * The MLClientMetrics records the latency, the payload sizes, the response
+ * status codes and the errors of all requests send by a {@link MLClient}. The
+ * metrics are registered in a MicroProfile MetricRegistry and tagged with the
+ * service endpoint of the client, the replica endpoint, the model and the
+ * operation (training, validate, analyse):
+ * <ul>
+ * <li>ml.client.request.duration - histogram of the request latency in
+ * milliseconds
+ * <li>ml.client.request.size - histogram of the request body size in bytes
+ * <li>ml.client.response.size - histogram of the response body size in bytes
+ * <li>ml.client.responses - counter of responses, additionally tagged with the
+ * status code
+ * <li>ml.client.errors - counter of failed requests without a response,
+ * additionally tagged with the error type
+ * </ul>
+ * Each attempt of a retried or hedged request is recorded separately.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLClientMetrics {
+
+    public static final String OPERATION_TRAINING = "training";
+    public static final String OPERATION_VALIDATE = "validate";
+    public static final String OPERATION_ANALYSE = "analyse";
+
+    public static final String METRIC_REQUEST_DURATION = "ml.client.request.duration";
+    public static final String METRIC_REQUEST_SIZE = "ml.client.request.size";
+    public static final String METRIC_RESPONSE_SIZE = "ml.client.response.size";
+    public static final String METRIC_RESPONSES = "ml.client.responses";
+    public static final String METRIC_ERRORS = "ml.client.errors";
+
+    public static final String TAG_CLIENT = "client";
+    public static final String TAG_ENDPOINT = "endpoint";
+
+    private static final List<String> METRIC_NAMES = Arrays.asList(METRIC_REQUEST_DURATION, METRIC_REQUEST_SIZE,
+            METRIC_RESPONSE_SIZE, METRIC_RESPONSES, METRIC_ERRORS);
+
+    private static final Metadata DURATION_METADATA = Metadata.builder().withName(METRIC_REQUEST_DURATION)
+            .withDescription("Latency of ML service requests").withType(MetricType.HISTOGRAM)
+            .withUnit(MetricUnits.MILLISECONDS).build();
+    private static final Metadata REQUEST_SIZE_METADATA = Metadata.builder().withName(METRIC_REQUEST_SIZE)
+            .withDescription("Body size of ML service requests").withType(MetricType.HISTOGRAM)
+            .withUnit(MetricUnits.BYTES).build();
+    private static final Metadata RESPONSE_SIZE_METADATA = Metadata.builder().withName(METRIC_RESPONSE_SIZE)
+            .withDescription("Body size of ML service responses").withType(MetricType.HISTOGRAM)
+            .withUnit(MetricUnits.BYTES).build();
+    private static final Metadata RESPONSES_METADATA = Metadata.builder().withName(METRIC_RESPONSES)
+            .withDescription("Responses of the ML service by status code").withType(MetricType.COUNTER).build();
+    private static final Metadata ERRORS_METADATA = Metadata.builder().withName(METRIC_ERRORS)
+            .withDescription("ML service requests failed without a response").withType(MetricType.COUNTER)
+            .build();
+
+    private MetricRegistry metricRegistry;
+    private String client;
+
+    /**
+     * Creates the metrics of a client. A replica can be part of the endpoint
+     * lists of several clients, so all metrics are tagged with the service
+     * endpoint of the owning client.
+     * 
+     * @param metricRegistry
+     * @param client         - the service endpoint of the client
+     */
+    public MLClientMetrics(MetricRegistry metricRegistry, String client) {
+        super();
+        this.metricRegistry = metricRegistry;
+        this.client = client;
+    }
+
+    /**
+     * Records a request answered by the ML service.
+     * 
+     * @param endpoint      - the replica endpoint
+     * @param model         - the model name
+     * @param operation     - training, validate or analyse
+     * @param status        - the response status code
+     * @param duration      - latency in milliseconds
+     * @param requestBytes  - size of the request body
+     * @param responseBytes - size of the response body read by the client
+     */
+    public void recordResponse(String endpoint, String model, String operation, int status, long duration,
+            long requestBytes, long responseBytes) {
+        Tag[] tags = buildTags(endpoint, model, operation);
+        metricRegistry.histogram(DURATION_METADATA, tags).update(duration);
+        metricRegistry.histogram(REQUEST_SIZE_METADATA, tags).update(requestBytes);
+        metricRegistry.histogram(RESPONSE_SIZE_METADATA, tags).update(responseBytes);
+        metricRegistry.counter(RESPONSES_METADATA, appendTag(tags, new Tag("status", String.valueOf(status))))
+                .inc();
+    }
+
+    /**
+     * Records a request failed without a response, e.g. because of a connect
+     * error, an exceeded deadline or an open circuit breaker.
+     * 
+     * @param endpoint  - the replica endpoint
+     * @param model     - the model name
+     * @param operation - training, validate or analyse
+     * @param error     - the error type
+     */
+    public void recordError(String endpoint, String model, String operation, String error) {
+        Tag[] tags = buildTags(endpoint, model, operation);
+        metricRegistry.counter(ERRORS_METADATA, appendTag(tags, new Tag("error", error))).inc();
+    }
+
+    /**
+     * Removes all request metrics of an endpoint recorded by this client.
+     * 
+     * @param endpoint - the replica endpoint
+     */
+    public void remove(String endpoint) {
+        metricRegistry.removeMatching((metricID, metric) -> METRIC_NAMES.contains(metricID.getName())
+                && client.equals(metricID.getTags().get(TAG_CLIENT))
+                && endpoint.equals(metricID.getTags().get(TAG_ENDPOINT)));
+    }
+
+    private Tag[] buildTags(String endpoint, String model, String operation) {
+        return new Tag[] { new Tag(TAG_CLIENT, client), new Tag(TAG_ENDPOINT, endpoint),
+                new Tag("model", model == null ? "" : model), new Tag("operation", operation) };
+    }
+
+    private Tag[] appendTag(Tag[] tags, Tag tag) {
+        Tag[] result = Arrays.copyOf(tags, tags.length + 1);
+        result[tags.length] = tag;
+        return result;
+    }
+}
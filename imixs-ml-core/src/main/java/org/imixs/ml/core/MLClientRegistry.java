@@ -0,0 +1,341 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.core;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricID;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.eclipse.microprofile.metrics.Tag;
+
+/**
+ * The MLClientRegistry holds one long-lived {@link MLClient} per ML service
+ * endpoint. The clients are shared by all services, so that a ML request reuses
+ * the pooled keep-alive connections of an endpoint instead of building a new
+ * client for each document.
+ * <p>
+ * The registry can be configured by the following properties:
+ * <ul>
+ * <li>ml.client.poolsize - maximum number of concurrent connections per
+ * endpoint replica (default 10)
+ * <li>ml.client.idletimeout - time in milliseconds after which an unused client
+ * is closed (default 300000)
+ * <li>ml.client.connecttimeout - connect timeout in milliseconds (default 5000)
+ * <li>ml.client.readtimeout - read timeout in milliseconds (default 60000)
+ * <li>ml.client.deadline - overall time in milliseconds for a request including
+ * all retries (default 120000)
+ * <li>ml.client.retries - maximum retries for analyse and validate requests
+ * (default 2)
+ * <li>ml.client.retrydelay - base delay in milliseconds between retries (default
+ * 500)
+ * <li>ml.client.breaker.threshold - consecutive failures opening the circuit
+ * breaker (default 5)
+ * <li>ml.client.breaker.delay - time in milliseconds before an open circuit
+ * breaker probes the service again (default 30000)
+ * <li>ml.client.hedge - enables hedged analyse requests (default false)
+ * <li>ml.client.hedge.percentile - latency percentile of the last analyse
+ * requests after which a hedged request is send (default 95)
+ * <li>ml.client.gzip - 'true' to compress the requests to all endpoints or a
+ * comma separated list of endpoints supporting gzip (default false)
+ * <li>ml.client.gzip.threshold - minimum size in bytes of a compressed request
+ * body (default 8192)
+ * </ul>
+ * The state of the circuit breaker of each endpoint replica is exposed by the gauges
+ * 'ml.client.breaker.state' (0=closed, 1=open, 2=half open),
+ * 'ml.client.breaker.failures' and 'ml.client.breaker.opened', tagged with the
+ * endpoint. In addition the latency, payload sizes, status codes and errors of
+ * all requests are recorded by {@link MLClientMetrics} per endpoint, model and
+ * operation. The metrics are only registered if MicroProfile Metrics is
+ * available.
+ * <p>
+ * All clients are closed when the application is shut down.
+ *
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class MLClientRegistry {
+
+    private static Logger logger = Logger.getLogger(MLClientRegistry.class.getName());
+
+    public static final String METRIC_BREAKER_STATE = "ml.client.breaker.state";
+    public static final String METRIC_BREAKER_FAILURES = "ml.client.breaker.failures";
+    public static final String METRIC_BREAKER_OPENED = "ml.client.breaker.opened";
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_POOLSIZE, defaultValue = "10")
+    int poolSize;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_IDLETIMEOUT, defaultValue = "300000")
+    long idleTimeout;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_CONNECTTIMEOUT, defaultValue = "5000")
+    long connectTimeout;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_READTIMEOUT, defaultValue = "60000")
+    long readTimeout;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_DEADLINE, defaultValue = "120000")
+    long deadline;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_RETRIES, defaultValue = "2")
+    int retries;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_RETRYDELAY, defaultValue = "500")
+    long retryDelay;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_BREAKER_THRESHOLD, defaultValue = "5")
+    int breakerThreshold;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_BREAKER_DELAY, defaultValue = "30000")
+    long breakerDelay;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_HEDGE, defaultValue = "false")
+    boolean hedging;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_HEDGE_PERCENTILE, defaultValue = "95")
+    double hedgePercentile;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_GZIP, defaultValue = "false")
+    String gzip;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_CLIENT_GZIP_THRESHOLD, defaultValue = "8192")
+    int gzipThreshold;
+
+    @Inject
+    Instance<MetricRegistry> metricRegistryInstance;
+
+    private Map<String, MLClient> clients = new ConcurrentHashMap<String, MLClient>();
+    private volatile long lastEviction = System.currentTimeMillis();
+
+    /**
+     * Returns the shared MLClient for the given service endpoint. If no client
+     * exists for this endpoint a new client is created. The service endpoint can
+     * be a comma separated list of replicas.
+     *
+     * @param serviceEndpoint - the ml API endpoint(s)
+     * @return MLClient
+     */
+    public MLClient getClient(String serviceEndpoint) {
+        evictIdleClients();
+        String key = MLClient.normalizeServiceEndpoint(serviceEndpoint);
+        return clients.computeIfAbsent(key, k -> createClient(k));
+    }
+
+    /**
+     * Creates a new MLClient with the current configuration and registers the
+     * circuit breaker and request metrics.
+     * 
+     * @param serviceEndpoint
+     * @return new MLClient
+     */
+    protected MLClient createClient(String serviceEndpoint) {
+        MLClient client = new MLClient(serviceEndpoint, poolSize);
+        client.setConnectTimeout(connectTimeout);
+        client.setReadTimeout(readTimeout);
+        client.setDeadline(deadline);
+        client.setRetries(retries);
+        client.setRetryDelay(retryDelay);
+        client.setHedging(hedging);
+        client.setHedgePercentile(hedgePercentile);
+        if (isGzipEnabled(client)) {
+            client.setGzipThreshold(gzipThreshold);
+        }
+        MetricRegistry metricRegistry = getMetricRegistry();
+        if (metricRegistry != null) {
+            client.setMetrics(new MLClientMetrics(metricRegistry, client.getServiceEndpoint()));
+        }
+        for (MLReplica replica : client.getReplicas()) {
+            replica.setCircuitBreaker(
+                    new MLCircuitBreaker(replica.getServiceEndpoint(), breakerThreshold, breakerDelay));
+            registerMetrics(client, replica);
+        }
+        return client;
+    }
+
+    /**
+     * Returns true if gzip compression is enabled for a client. The property
+     * 'ml.client.gzip' can be 'true' for all endpoints or a comma separated list
+     * of endpoints.
+     * 
+     * @param client
+     * @return
+     */
+    protected boolean isGzipEnabled(MLClient client) {
+        if (gzip == null || gzip.isEmpty() || "false".equalsIgnoreCase(gzip.trim())) {
+            return false;
+        }
+        if ("true".equalsIgnoreCase(gzip.trim())) {
+            return true;
+        }
+        List<String> gzipEndpoints = Arrays.asList(MLClient.normalizeServiceEndpoint(gzip).split(","));
+        for (MLReplica replica : client.getReplicas()) {
+            if (gzipEndpoints.contains(replica.getServiceEndpoint())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Registers the circuit breaker gauges of a replica. A replica can be part of
+     * the endpoint lists of several clients, each with its own circuit breaker. So
+     * the gauges are tagged with the replica and the service endpoint of the
+     * client.
+     * 
+     * @param client
+     * @param replica
+     */
+    private void registerMetrics(MLClient client, MLReplica replica) {
+        MetricRegistry metricRegistry = getMetricRegistry();
+        if (metricRegistry == null) {
+            return;
+        }
+        MLCircuitBreaker breaker = replica.getCircuitBreaker();
+        Tag[] tags = buildGaugeTags(client, replica);
+        try {
+            metricRegistry.register(buildGaugeMetadata(METRIC_BREAKER_STATE,
+                    "Circuit breaker state of the ML endpoint (0=closed, 1=open, 2=half open)"),
+                    (Gauge<Integer>) breaker::getState, tags);
+            metricRegistry.register(
+                    buildGaugeMetadata(METRIC_BREAKER_FAILURES, "Consecutive failed requests of the ML endpoint"),
+                    (Gauge<Integer>) breaker::getFailures, tags);
+            metricRegistry.register(
+                    buildGaugeMetadata(METRIC_BREAKER_OPENED, "Number of times the circuit breaker was opened"),
+                    (Gauge<Long>) breaker::getOpenCount, tags);
+        } catch (IllegalArgumentException e) {
+            logger.warning("......failed to register metrics for " + replica.getServiceEndpoint() + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the circuit breaker gauges and request metrics of all replicas of a
+     * client.
+     * 
+     * @param client
+     */
+    private void removeMetrics(MLClient client) {
+        MetricRegistry metricRegistry = getMetricRegistry();
+        if (metricRegistry == null) {
+            return;
+        }
+        for (MLReplica replica : client.getReplicas()) {
+            Tag[] tags = buildGaugeTags(client, replica);
+            metricRegistry.remove(new MetricID(METRIC_BREAKER_STATE, tags));
+            metricRegistry.remove(new MetricID(METRIC_BREAKER_FAILURES, tags));
+            metricRegistry.remove(new MetricID(METRIC_BREAKER_OPENED, tags));
+            if (client.getMetrics() != null) {
+                client.getMetrics().remove(replica.getServiceEndpoint());
+            }
+        }
+    }
+
+    private Tag[] buildGaugeTags(MLClient client, MLReplica replica) {
+        return new Tag[] { new Tag(MLClientMetrics.TAG_CLIENT, client.getServiceEndpoint()),
+                new Tag(MLClientMetrics.TAG_ENDPOINT, replica.getServiceEndpoint()) };
+    }
+
+    private Metadata buildGaugeMetadata(String name, String description) {
+        return Metadata.builder().withName(name).withDescription(description).withType(MetricType.GAUGE).build();
+    }
+
+    /**
+     * Returns the MetricRegistry or null if MicroProfile Metrics is not available.
+     * 
+     * @return
+     */
+    private MetricRegistry getMetricRegistry() {
+        if (metricRegistryInstance != null && metricRegistryInstance.isResolvable()) {
+            return metricRegistryInstance.get();
+        }
+        return null;
+    }
+
+    /**
+     * Closes all clients not used within the idle timeout. The method is called by
+     * getClient and runs at most once per idle timeout interval.
+     */
+    protected void evictIdleClients() {
+        long now = System.currentTimeMillis();
+        if (idleTimeout <= 0 || now - lastEviction < idleTimeout) {
+            return;
+        }
+        lastEviction = now;
+        Iterator<MLClient> iter = clients.values().iterator();
+        while (iter.hasNext()) {
+            MLClient client = iter.next();
+            if (client.isIdle() && now - client.getLastAccess() > idleTimeout) {
+                logger.fine("......evict idle ml client " + client.getServiceEndpoint());
+                iter.remove();
+                removeMetrics(client);
+                client.close();
+            }
+        }
+    }
+
+    /**
+     * Closes all clients. This method is called by the container on shutdown.
+     */
+    @PreDestroy
+    public void close() {
+        for (MLClient client : clients.values()) {
+            removeMetrics(client);
+            client.close();
+        }
+        clients.clear();
+    }
+
+}
@@ -17,6 +17,23 @@ public class MLConfig {
     public static final String ML_LOCALES = "ml.locales";
     public static final String ML_TRAINING_QUALITYLEVEL = "ml.training.quality";
     public static final String ML_OPTIONS = "ml.options";
+    public static final String ML_CLIENT_POOLSIZE = "ml.client.poolsize";
+    public static final String ML_CLIENT_IDLETIMEOUT = "ml.client.idletimeout";
+    public static final String ML_CLIENT_CONNECTTIMEOUT = "ml.client.connecttimeout";
+    public static final String ML_CLIENT_READTIMEOUT = "ml.client.readtimeout";
+    public static final String ML_CLIENT_DEADLINE = "ml.client.deadline";
+    public static final String ML_CLIENT_RETRIES = "ml.client.retries";
+    public static final String ML_CLIENT_RETRYDELAY = "ml.client.retrydelay";
+    public static final String ML_CLIENT_BREAKER_THRESHOLD = "ml.client.breaker.threshold";
+    public static final String ML_CLIENT_BREAKER_DELAY = "ml.client.breaker.delay";
+    public static final String ML_CLIENT_HEDGE = "ml.client.hedge";
+    public static final String ML_CLIENT_HEDGE_PERCENTILE = "ml.client.hedge.percentile";
+    public static final String ML_CLIENT_GZIP = "ml.client.gzip";
+    public static final String ML_CLIENT_GZIP_THRESHOLD = "ml.client.gzip.threshold";
+    public static final String ML_VARIANTCACHE_SIZE = "ml.variantcache.size";
+    public static final String ML_TRAINING_PARALLEL = "ml.training.parallel";
+    public static final String ML_TRAINING_MAXERRORS = "ml.training.maxerrors";
+    public static final String ML_REGEX_MAXMATCHES = "ml.regex.maxmatches";
 
     /**
      * Convert the List of ItemCollections back into a List of Map elements
@@ -0,0 +1,100 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.core;
+
+import java.util.Arrays;
+
+/**
+ * The MLLatencyStatistic holds the latencies of the last requests in a ring
+ * buffer and computes percentiles. The statistic is used by the
+ * {@link MLClient} to compute the delay of a hedged request.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLLatencyStatistic {
+
+    public static final int DEFAULT_SIZE = 100;
+
+    private long[] latencies;
+    private int count = 0;
+    private int index = 0;
+
+    public MLLatencyStatistic() {
+        this(DEFAULT_SIZE);
+    }
+
+    public MLLatencyStatistic(int size) {
+        super();
+        latencies = new long[size > 0 ? size : DEFAULT_SIZE];
+    }
+
+    /**
+     * Adds a new latency. If the buffer is full, the oldest latency is replaced.
+     * 
+     * @param latency - latency in milliseconds
+     */
+    public synchronized void record(long latency) {
+        latencies[index] = latency;
+        index = (index + 1) % latencies.length;
+        if (count < latencies.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Returns the number of recorded latencies.
+     * 
+     * @return
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the latency below which the given percentage of the recorded
+     * latencies fall, or -1 if no latency was recorded.
+     * 
+     * @param percentile - value between 0 and 100
+     * @return latency in milliseconds
+     */
+    public long getPercentile(double percentile) {
+        long[] values;
+        synchronized (this) {
+            if (count == 0) {
+                return -1;
+            }
+            values = Arrays.copyOf(latencies, count);
+        }
+        Arrays.sort(values);
+        int pos = (int) Math.ceil(percentile / 100.0 * values.length) - 1;
+        return values[Math.max(0, Math.min(pos, values.length - 1))];
+    }
+
+}
@@ -0,0 +1,129 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.core;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.client.ClientRequestContext;
+import jakarta.ws.rs.client.ClientResponseContext;
+import jakarta.ws.rs.client.ClientResponseFilter;
+import jakarta.ws.rs.ext.WriterInterceptor;
+import jakarta.ws.rs.ext.WriterInterceptorContext;
+
+/**
+ * The MLMetricsFilter counts the bytes of the request and response bodies of a
+ * MLClient request. The counts are collected in a {@link ByteCount} object
+ * passed with the request property {@link #PROPERTY_BYTE_COUNT}. Requests
+ * without this property are not counted.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLMetricsFilter implements WriterInterceptor, ClientResponseFilter {
+
+    public static final String PROPERTY_BYTE_COUNT = "org.imixs.ml.core.bytecount";
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException, WebApplicationException {
+        Object byteCount = context.getProperty(PROPERTY_BYTE_COUNT);
+        if (!(byteCount instanceof ByteCount)) {
+            context.proceed();
+            return;
+        }
+        AtomicLong counter = ((ByteCount) byteCount).requestBytes;
+        OutputStream out = context.getOutputStream();
+        context.setOutputStream(new FilterOutputStream(out) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                counter.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                counter.addAndGet(len);
+            }
+        });
+        context.proceed();
+        context.setOutputStream(out);
+    }
+
+    @Override
+    public void filter(ClientRequestContext requestContext, ClientResponseContext responseContext)
+            throws IOException {
+        Object byteCount = requestContext.getProperty(PROPERTY_BYTE_COUNT);
+        if (!(byteCount instanceof ByteCount) || !responseContext.hasEntity()) {
+            return;
+        }
+        AtomicLong counter = ((ByteCount) byteCount).responseBytes;
+        responseContext.setEntityStream(new FilterInputStream(responseContext.getEntityStream()) {
+            @Override
+            public int read() throws IOException {
+                int b = super.read();
+                if (b >= 0) {
+                    counter.incrementAndGet();
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int n = super.read(b, off, len);
+                if (n > 0) {
+                    counter.addAndGet(n);
+                }
+                return n;
+            }
+        });
+    }
+
+    /**
+     * Holds the byte counts of a single request.
+     */
+    public static class ByteCount {
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final AtomicLong responseBytes = new AtomicLong();
+
+        public long getRequestBytes() {
+            return requestBytes.get();
+        }
+
+        public long getResponseBytes() {
+            return responseBytes.get();
+        }
+    }
+}
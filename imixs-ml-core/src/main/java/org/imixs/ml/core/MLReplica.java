@@ -0,0 +1,124 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.core;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A MLReplica represents a single instance of a ML service managed by a
+ * {@link MLClient}. The replica tracks the number of outstanding requests used
+ * for load balancing, limits the concurrent connections to the instance by its
+ * pool size and holds the {@link MLCircuitBreaker} of the instance.
+ * While the circuit breaker is open, the replica is removed from the load
+ * balancing. It is added again after a successful health probe.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLReplica {
+
+    private String serviceEndpoint;
+    private MLCircuitBreaker circuitBreaker;
+    private AtomicInteger outstanding = new AtomicInteger();
+    private int poolSize;
+    private Semaphore connections;
+
+    public MLReplica(String serviceEndpoint) {
+        this(serviceEndpoint, MLClient.DEFAULT_POOL_SIZE);
+    }
+
+    public MLReplica(String serviceEndpoint, int poolSize) {
+        super();
+        this.serviceEndpoint = serviceEndpoint;
+        this.circuitBreaker = new MLCircuitBreaker(serviceEndpoint);
+        this.poolSize = poolSize;
+        this.connections = new Semaphore(poolSize);
+    }
+
+    public String getServiceEndpoint() {
+        return serviceEndpoint;
+    }
+
+    public MLCircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public void setCircuitBreaker(MLCircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Returns the number of requests currently running on this replica.
+     * 
+     * @return
+     */
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * Returns the number of free connections of this replica.
+     * 
+     * @return
+     */
+    public int getAvailableConnections() {
+        return connections.availablePermits();
+    }
+
+    /**
+     * Returns true if the replica accepts requests.
+     * 
+     * @return
+     */
+    public boolean isAvailable() {
+        return circuitBreaker.isClosed();
+    }
+
+    boolean tryAcquireConnection() {
+        return connections.tryAcquire();
+    }
+
+    void releaseConnection() {
+        connections.release();
+    }
+
+    void startRequest() {
+        outstanding.incrementAndGet();
+    }
+
+    void finishRequest() {
+        outstanding.decrementAndGet();
+    }
+
+}
@@ -0,0 +1,176 @@
+/*
+ *  Imixs-Workflow
+ *
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,
+ *  http://www.imixs.com
+ *
+ *  This program is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU General Public License
+ *  as published by the Free Software Foundation; either version 2
+ *  of the License, or (at your option) any later version.
+ *
+ *  This program is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ *  General Public License for more details.
+ *
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *
+ *  Project:
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *
+ *  Contributors:
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+
+package org.imixs.ml.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import jakarta.json.Json;
+import jakarta.json.stream.JsonGenerator;
+import jakarta.json.stream.JsonGeneratorFactory;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.StreamingOutput;
+
+import org.imixs.ml.xml.XMLTrainingCategory;
+import org.imixs.ml.xml.XMLTrainingData;
+import org.imixs.ml.xml.XMLTrainingEntity;
+
+/**
+ * The TrainingDataStreamingOutput writes a list of {@link XMLTrainingData}
+ * objects as a JSON array directly into the request output stream.
+ * <p>
+ * In difference to a {@link jakarta.ws.rs.core.GenericEntity} the JSON of a
+ * batch is not serialized into memory before it is send. Each training data
+ * object is written and flushed one after another, so the memory needed to post
+ * a batch is bounded by the size of the largest document.
+ * <p>
+ * The JSON structure corresponds to the TrainingData model of the Imixs-ML
+ * API:
+ * 
+ * <pre>
+ * {@code
+ * [{"text":"...","entities":[{"label":"...","start":0,"stop":12}],
+ *   "categories":[{"label":"...","enclosed":true}]}]
+ * }
+ * </pre>
+ * 
+ * @author rsoika
+ *
+ */
+public class TrainingDataStreamingOutput implements StreamingOutput {
+
+    private static final JsonGeneratorFactory generatorFactory = Json.createGeneratorFactory(null);
+
+    private List<XMLTrainingData> trainingData;
+
+    public TrainingDataStreamingOutput(List<XMLTrainingData> trainingData) {
+        super();
+        this.trainingData = trainingData;
+    }
+
+    public List<XMLTrainingData> getTrainingData() {
+        return trainingData;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException, WebApplicationException {
+        // the generator must not close the request stream
+        JsonGenerator generator = generatorFactory.createGenerator(new NonClosingOutputStream(output));
+        generator.writeStartArray();
+        if (trainingData != null) {
+            for (XMLTrainingData data : trainingData) {
+                if (data == null) {
+                    continue;
+                }
+                writeTrainingData(generator, data);
+                // push the document to the stream before the next one is written
+                generator.flush();
+            }
+        }
+        generator.writeEnd();
+        generator.close();
+    }
+
+    /**
+     * Writes a single training data object
+     * 
+     * @param generator
+     * @param data
+     */
+    private void writeTrainingData(JsonGenerator generator, XMLTrainingData data) {
+        generator.writeStartObject();
+        if (data.getText() != null) {
+            generator.write("text", data.getText());
+        }
+        generator.writeStartArray("entities");
+        for (XMLTrainingEntity entity : nonNull(data.getEntities())) {
+            generator.writeStartObject();
+            if (entity.getLabel() != null) {
+                generator.write("label", entity.getLabel());
+            }
+            generator.write("start", entity.getStart());
+            generator.write("stop", entity.getStop());
+            generator.writeEnd();
+        }
+        generator.writeEnd();
+        generator.writeStartArray("categories");
+        for (XMLTrainingCategory category : nonNull(data.getCategories())) {
+            generator.writeStartObject();
+            if (category.getLabel() != null) {
+                generator.write("label", category.getLabel());
+            }
+            generator.write("enclosed", category.isEnclosed());
+            generator.writeEnd();
+        }
+        generator.writeEnd();
+        generator.writeEnd();
+    }
+
+    private static <T> List<T> nonNull(List<T> list) {
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        return list;
+    }
+
+    /**
+     * Wrapper ignoring the close call of the JsonGenerator. The request stream is
+     * closed by the JAX-RS runtime.
+     */
+    private static class NonClosingOutputStream extends OutputStream {
+        private OutputStream out;
+
+        NonClosingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package org.imixs.ml.training;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The AhoCorasickMatcher finds all occurrences of a set of patterns in a text
+ * in one linear pass. The automaton is built once for a list of patterns and
+ * can be applied to any number of texts.
+ * <p>
+ * For each pattern the matcher reports the same non-overlapping occurrences as
+ * a {@code String.indexOf} loop continuing behind the end of each match.
+ * Occurrences of different patterns may overlap.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * AhoCorasickMatcher matcher = new AhoCorasickMatcher(variants);
+ * matcher.match(text, (pattern, start, stop) -> ...);
+ * }
+ * </pre>
+ *
+ * @author rsoika
+ */
+public class AhoCorasickMatcher {
+
+    /**
+     * Callback for each occurrence of a pattern.
+     */
+    @FunctionalInterface
+    public interface MatchHandler {
+        /**
+         * @param pattern - index of the pattern in the pattern list
+         * @param start   - start position in the text
+         * @param stop    - end position (exclusive) in the text
+         */
+        void onMatch(int pattern, int start, int stop);
+    }
+
+    private List<String> patterns;
+    // goto function as an open addressing hash table without boxing. A key
+    // combines the node and the next character, a slot is empty if its value is 0
+    private long[] transitionKeys;
+    private int[] transitionValues;
+    private int transitionMask;
+    private int[] failure;
+    // index of the pattern ending at a node or -1
+    private int[] output;
+    // next node on the failure path with an output or -1
+    private int[] outputLink;
+    private int nodeCount = 1;
+
+    /**
+     * Builds the automaton for a list of patterns. Empty patterns are ignored.
+     *
+     * @param patterns
+     */
+    public AhoCorasickMatcher(List<String> patterns) {
+        this.patterns = patterns;
+        int maxNodes = 1;
+        for (String pattern : patterns) {
+            maxNodes += pattern.length();
+        }
+        failure = new int[maxNodes];
+        output = new int[maxNodes];
+        outputLink = new int[maxNodes];
+        Arrays.fill(output, -1);
+        Arrays.fill(outputLink, -1);
+        // the table has at most maxNodes - 1 transitions and a load factor <= 0.5
+        int capacity = Integer.highestOneBit(Math.max(1, maxNodes - 1)) << 2;
+        transitionKeys = new long[capacity];
+        transitionValues = new int[capacity];
+        transitionMask = capacity - 1;
+
+        // build the trie
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            if (pattern.isEmpty()) {
+                continue;
+            }
+            int node = 0;
+            for (int j = 0; j < pattern.length(); j++) {
+                int next = getTransition(node, pattern.charAt(j));
+                if (next == 0) {
+                    next = nodeCount++;
+                    putTransition(node, pattern.charAt(j), next);
+                }
+                node = next;
+            }
+            if (output[node] == -1) {
+                output[node] = i;
+            }
+        }
+        buildFailureLinks();
+    }
+
+    /**
+     * Computes the failure and output links in breadth first order, so the links
+     * of a node are computed after all nodes of a lower depth.
+     */
+    private void buildFailureLinks() {
+        // collect the parent and character of each node
+        int[] parent = new int[nodeCount];
+        char[] label = new char[nodeCount];
+        int[] depth = new int[nodeCount];
+        for (int slot = 0; slot < transitionValues.length; slot++) {
+            int child = transitionValues[slot];
+            if (child != 0) {
+                parent[child] = (int) (transitionKeys[slot] >>> 16);
+                label[child] = (char) (transitionKeys[slot] & 0xFFFF);
+            }
+        }
+        // node ids are created in trie order, so a parent always has a lower id
+        int maxDepth = 0;
+        for (int node = 1; node < nodeCount; node++) {
+            depth[node] = depth[parent[node]] + 1;
+            maxDepth = Math.max(maxDepth, depth[node]);
+        }
+        // counting sort of the nodes by depth, offset[d] is the first position of
+        // depth d
+        int[] offset = new int[maxDepth + 2];
+        for (int node = 1; node < nodeCount; node++) {
+            offset[depth[node] + 1]++;
+        }
+        for (int d = 2; d <= maxDepth + 1; d++) {
+            offset[d] += offset[d - 1];
+        }
+        int[] order = new int[nodeCount - 1];
+        for (int node = 1; node < nodeCount; node++) {
+            order[offset[depth[node]]++] = node;
+        }
+        for (int i = 0; i < order.length; i++) {
+            int node = order[i];
+            int p = parent[node];
+            if (p == 0) {
+                failure[node] = 0;
+            } else {
+                int f = failure[p];
+                int next = getTransition(f, label[node]);
+                while (next == 0 && f != 0) {
+                    f = failure[f];
+                    next = getTransition(f, label[node]);
+                }
+                failure[node] = next;
+            }
+            int f = failure[node];
+            outputLink[node] = output[f] != -1 ? f : outputLink[f];
+        }
+    }
+
+    /**
+     * Finds all occurrences of the patterns in a text. The handler is called in
+     * the order of the end positions. For each pattern only occurrences starting
+     * behind the previous occurrence of the same pattern are reported.
+     *
+     * @param text
+     * @param handler
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        int[] lastStop = new int[patterns.size()];
+        int node = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int next = getTransition(node, c);
+            while (next == 0 && node != 0) {
+                node = failure[node];
+                next = getTransition(node, c);
+            }
+            node = next;
+            // report the pattern of this node and all patterns which are suffixes
+            int out = output[node] != -1 ? node : outputLink[node];
+            while (out != -1) {
+                int pattern = output[out];
+                int stop = i + 1;
+                int start = stop - patterns.get(pattern).length();
+                if (start >= lastStop[pattern]) {
+                    lastStop[pattern] = stop;
+                    handler.onMatch(pattern, start, stop);
+                }
+                out = outputLink[out];
+            }
+        }
+    }
+
+    /**
+     * Returns the child node for a character or 0 if no transition exists. The
+     * root node 0 is never a child.
+     */
+    private int getTransition(int node, char c) {
+        long key = key(node, c);
+        int slot = hash(key) & transitionMask;
+        while (transitionValues[slot] != 0) {
+            if (transitionKeys[slot] == key) {
+                return transitionValues[slot];
+            }
+            slot = (slot + 1) & transitionMask;
+        }
+        return 0;
+    }
+
+    private void putTransition(int node, char c, int child) {
+        long key = key(node, c);
+        int slot = hash(key) & transitionMask;
+        while (transitionValues[slot] != 0) {
+            slot = (slot + 1) & transitionMask;
+        }
+        transitionKeys[slot] = key;
+        transitionValues[slot] = child;
+    }
+
+    private static long key(int node, char c) {
+        return ((long) node << 16) | c;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
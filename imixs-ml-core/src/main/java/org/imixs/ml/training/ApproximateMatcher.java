@@ -0,0 +1,179 @@
+package org.imixs.ml.training;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.imixs.ml.training.AhoCorasickMatcher.MatchHandler;
+
+/**
+ * The ApproximateMatcher finds occurrences of a list of patterns in a text
+ * allowing up to k edit errors (substitution, insertion or deletion of a
+ * character). This can be used to locate values in an OCR text with wrong
+ * characters like 'DE89 37O4 0044' for 'DE89 3704 0044'.
+ * <p>
+ * The matcher uses the bit-parallel algorithm of Wu and Manber. Each pattern is
+ * searched in one pass over the text. Patterns longer than 64 characters are
+ * ignored. To avoid random matches, the allowed errors are reduced for short
+ * patterns to one error per {@link #CHARS_PER_ERROR} characters.
+ * <p>
+ * For each pattern the matcher reports non-overlapping occurrences. Of
+ * consecutive end positions the one with the fewest errors is reported. The
+ * start position is the one with the fewest errors closest to the pattern
+ * length.
+ *
+ * @author rsoika
+ */
+public class ApproximateMatcher {
+
+    public static final int MAX_PATTERN_LENGTH = 64;
+    public static final int CHARS_PER_ERROR = 4;
+
+    private List<String> patterns;
+    private int maxErrors;
+
+    /**
+     * Creates a matcher for a list of patterns.
+     *
+     * @param patterns  - list of patterns
+     * @param maxErrors - maximum number of errors per occurrence
+     */
+    public ApproximateMatcher(List<String> patterns, int maxErrors) {
+        this.patterns = patterns;
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Finds all approximate occurrences of the patterns in a text.
+     *
+     * @param text
+     * @param handler
+     */
+    public void match(CharSequence text, MatchHandler handler) {
+        for (int i = 0; i < patterns.size(); i++) {
+            String pattern = patterns.get(i);
+            int k = Math.min(maxErrors, (pattern.length() - 1) / CHARS_PER_ERROR);
+            if (pattern.isEmpty() || pattern.length() > MAX_PATTERN_LENGTH || k <= 0) {
+                continue;
+            }
+            match(text, i, pattern, k, handler);
+        }
+    }
+
+    /**
+     * Searches one pattern with k errors. The bit i of the state r[d] is set if
+     * the first i+1 pattern characters match the text ending at the current
+     * position with at most d errors.
+     */
+    private void match(CharSequence text, int patternIndex, String pattern, int k, MatchHandler handler) {
+        int m = pattern.length();
+        long found = 1L << (m - 1);
+        // bit masks of the pattern positions for each character
+        long[] asciiMasks = new long[128];
+        Map<Character, Long> otherMasks = new HashMap<Character, Long>();
+        for (int i = 0; i < m; i++) {
+            char c = pattern.charAt(i);
+            if (c < 128) {
+                asciiMasks[c] |= 1L << i;
+            } else {
+                otherMasks.merge(c, 1L << i, (a, b) -> a | b);
+            }
+        }
+
+        long[] r = new long[k + 1];
+        int from = 0;
+        reset(r);
+        int bestStop = -1;
+        int bestErrors = k + 1;
+        int pos = from;
+        while (pos < text.length()) {
+            char c = text.charAt(pos);
+            long mask;
+            if (c < 128) {
+                mask = asciiMasks[c];
+            } else {
+                Long other = otherMasks.get(c);
+                mask = other == null ? 0 : other;
+            }
+            long previous = r[0];
+            r[0] = ((r[0] << 1) | 1) & mask;
+            for (int d = 1; d <= k; d++) {
+                long current = r[d];
+                // match | insertion | substitution | deletion
+                r[d] = (((current << 1) | 1) & mask) | previous | (previous << 1) | (r[d - 1] << 1) | 1;
+                previous = current;
+            }
+            int errors = k + 1;
+            for (int d = 0; d <= k; d++) {
+                if ((r[d] & found) != 0) {
+                    errors = d;
+                    break;
+                }
+            }
+            if (errors <= k) {
+                if (errors < bestErrors) {
+                    bestErrors = errors;
+                    bestStop = pos + 1;
+                }
+            } else if (bestStop != -1) {
+                // the run of end positions is over - report the best one and continue
+                // behind it
+                handler.onMatch(patternIndex, findStart(text, pattern, from, bestStop), bestStop);
+                from = bestStop;
+                pos = from;
+                reset(r);
+                bestStop = -1;
+                bestErrors = k + 1;
+                continue;
+            }
+            pos++;
+        }
+        if (bestStop != -1) {
+            handler.onMatch(patternIndex, findStart(text, pattern, from, bestStop), bestStop);
+        }
+    }
+
+    /**
+     * Computes the edit distance of the pattern and the text ending at the stop
+     * position backwards and returns the start position with the fewest errors.
+     * The start position is not lower than from.
+     */
+    private int findStart(CharSequence text, String pattern, int from, int stop) {
+        int m = pattern.length();
+        int n = Math.min(stop - from, m + maxErrors);
+        // column j holds the distance of the pattern suffix to the j chars before stop
+        int[] column = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            column[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            char c = pattern.charAt(m - i);
+            int diagonal = column[0];
+            column[0] = i;
+            for (int j = 1; j <= n; j++) {
+                int above = column[j];
+                int cost = text.charAt(stop - j) == c ? 0 : 1;
+                column[j] = Math.min(Math.min(above + 1, column[j - 1] + 1), diagonal + cost);
+                diagonal = above;
+            }
+        }
+        int bestLength = 0;
+        for (int j = 1; j <= n; j++) {
+            if (column[j] < column[bestLength]
+                    || (column[j] == column[bestLength] && Math.abs(j - m) < Math.abs(bestLength - m))) {
+                bestLength = j;
+            }
+        }
+        return stop - bestLength;
+    }
+
+    /**
+     * Initial state - with d errors the first d pattern characters can be
+     * deleted.
+     */
+    private static void reset(long[] r) {
+        for (int d = 0; d < r.length; d++) {
+            r[d] = (1L << d) - 1;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package org.imixs.ml.training;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.ml.core.MLConfig;
+
+/**
+ * The EntityVariantCache holds the text variants computed by the entity
+ * adapters for an entity value. An entry is identified by the value, the value
+ * type and the list of locales. So the TrainingDataBuilder fires an
+ * EntityObjectEvent only once for a value repeated in many documents, e.g. a
+ * date or an amount.
+ * <p>
+ * The cache size can be configured by the property 'ml.variantcache.size'
+ * (default 1000). A size of 0 disables the cache. If the cache is full, the
+ * least recently used entry is removed.
+ * <p>
+ * The cache assumes that the adapters compute the variants of a value only
+ * based on the value and the locales.
+ * 
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class EntityVariantCache {
+
+    public static final int DEFAULT_SIZE = 1000;
+
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_VARIANTCACHE_SIZE, defaultValue = "1000")
+    int maxSize = DEFAULT_SIZE;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    private Map<CacheKey, Set<String>> cache = new LinkedHashMap<CacheKey, Set<String>>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, Set<String>> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    public EntityVariantCache() {
+        super();
+    }
+
+    /**
+     * Creates a cache with a given size. This constructor is used outside of a CDI
+     * container.
+     * 
+     * @param maxSize - maximum number of cached values
+     */
+    public EntityVariantCache(int maxSize) {
+        super();
+        this.maxSize = maxSize;
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Returns the cached text variants of an entity value or null if the value
+     * is not cached. The returned set is unmodifiable.
+     * 
+     * @param value   - the entity value
+     * @param locales - the locales applied by the adapters
+     * @return set of text variants or null
+     */
+    public Set<String> get(Object value, List<Locale> locales) {
+        if (!isEnabled() || value == null) {
+            return null;
+        }
+        Set<String> result;
+        synchronized (this) {
+            result = cache.get(new CacheKey(value, locales));
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Stores the text variants of an entity value.
+     * 
+     * @param value    - the entity value
+     * @param locales  - the locales applied by the adapters
+     * @param variants - the text variants computed by the adapters
+     */
+    public void put(Object value, List<Locale> locales, Set<String> variants) {
+        if (!isEnabled() || value == null || variants == null) {
+            return;
+        }
+        CacheKey key = new CacheKey(value, locales);
+        Set<String> entry = Collections.unmodifiableSet(new HashSet<String>(variants));
+        synchronized (this) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * The cache key identifying an entity value. Mutable values are copied.
+     */
+    private static class CacheKey {
+        private Object value;
+        private String type;
+        private List<Locale> locales;
+
+        CacheKey(Object value, List<Locale> locales) {
+            if (value instanceof Date) {
+                value = ((Date) value).clone();
+            } else if (value instanceof Calendar) {
+                value = ((Calendar) value).clone();
+            }
+            this.value = value;
+            this.type = value.getClass().getName();
+            this.locales = locales == null ? Collections.emptyList() : new ArrayList<Locale>(locales);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return type.equals(other.type) && value.equals(other.value) && locales.equals(other.locales);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, value, locales);
+        }
+    }
+
+}
@@ -1,16 +1,23 @@
 package org.imixs.ml.training;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import jakarta.enterprise.event.Event;
 
+import org.imixs.ml.adapters.EntityAdapterRegistry;
 import org.imixs.ml.core.MLEntity;
 import org.imixs.ml.events.EntityObjectEvent;
 import org.imixs.ml.xml.XMLTrainingData;
@@ -25,10 +32,16 @@ import org.imixs.workflow.ItemCollection;
  * <ul>
  * <li>itemNames - list of items to be analyzed
  * <li>content - a text content form a file or workitem
- * <li>workitem - the workitem containing the entity data
+ * <li>workitem - the workitem containing the entity data. The workitem is not
+ * modified by the builder.
  * <li>entityObjectEvents - optional list of EntityObjectEvents to adapt the
  * values of a workitem
+ * <li>entityAdapterRegistry - optional registry to dispatch the
+ * EntityObjectEvents directly to the entity adapters
  * <li>locals - a list of locales to be applied to entityObjectEvents
+ * <li>executor - optional executor to search the entities in parallel
+ * <li>maxErrors - optional number of errors per item type to find values in an
+ * OCR text without an exact match
  * </ul>
  * The method build can be called to build a new XMLTrainingData object
  * 
@@ -40,18 +53,23 @@ public class TrainingDataBuilder {
 
     private List<MLEntity> mlEntities = null;
     private ItemCollection workitem = null;
+    // overlay of the items remapped by the build method
+    private ItemCollection mappedItems = null;
     private Event<EntityObjectEvent> entityObjectEvents = null;
+    private EntityAdapterRegistry entityAdapterRegistry = null;
     private XMLTrainingData trainingData = null;
     private List<Locale> locals = null;
+    private EntityVariantCache entityVariantCache = null;
+    private Executor executor = null;
+    private Map<String, Integer> maxErrors = null;
 
     public TrainingDataBuilder(String text, ItemCollection workitem, List<MLEntity> mlEntities, List<Locale> locals) {
         super();
         this.mlEntities = mlEntities;
-        if (workitem != null) {
-            this.workitem = (ItemCollection) workitem.clone();
-        } else {
-            this.workitem = null;
-        }
+        // the workitem is not cloned. Mapped items are stored in an overlay and all
+        // other items are read from the original workitem
+        this.workitem = workitem;
+        this.mappedItems = new ItemCollection();
         this.locals = locals;
         trainingData = new XMLTrainingData();
         trainingData.setText(text);
@@ -62,6 +80,95 @@ public class TrainingDataBuilder {
         return this;
     }
 
+    /**
+     * Sets an optional EntityAdapterRegistry. If set, the EntityObjectEvents are
+     * dispatched by the registry instead of the entityObjectEvents.
+     * 
+     * @param entityAdapterRegistry
+     * @return
+     */
+    public TrainingDataBuilder setEntityAdapterRegistry(EntityAdapterRegistry entityAdapterRegistry) {
+        this.entityAdapterRegistry = entityAdapterRegistry;
+        return this;
+    }
+
+    /**
+     * Sets an optional cache for the text variants computed by the entity
+     * adapters.
+     * 
+     * @param entityVariantCache
+     * @return
+     */
+    public TrainingDataBuilder setEntityVariantCache(EntityVariantCache entityVariantCache) {
+        this.entityVariantCache = entityVariantCache;
+        return this;
+    }
+
+    /**
+     * Sets an optional Executor. If an executor is set, the entities are searched
+     * in the text in parallel. The result is merged in the order of the entity
+     * list, so the training data is the same as in the sequential mode.
+     * <p>
+     * The entity adapters observing the EntityObjectEvent must be thread-safe in
+     * the parallel mode. Within a Jakarta EE container the executor must be a
+     * ManagedExecutorService, so the observers run with the container context.
+     * 
+     * @param executor
+     * @return
+     */
+    public TrainingDataBuilder setExecutor(Executor executor) {
+        this.executor = executor;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of errors (wrong, missing or additional characters)
+     * allowed to find an entity value in the text. The map contains the number of
+     * errors per item type of the MLEntity. An entity without an item type has
+     * the type 'text'.
+     * <p>
+     * Values which are found unchanged are not searched with errors. See
+     * {@link ApproximateMatcher}.
+     * 
+     * @param maxErrors - errors per item type
+     * @return
+     */
+    public TrainingDataBuilder setMaxErrors(Map<String, Integer> maxErrors) {
+        this.maxErrors = maxErrors;
+        return this;
+    }
+
+    /**
+     * Parses the maximum errors per item type in the format
+     * {@code type=errors,type=errors}. Invalid entries are ignored.
+     * <p>
+     * Example: {@code iban=2,date=1}
+     * 
+     * @param definition
+     * @return map of errors per item type
+     */
+    public static Map<String, Integer> parseMaxErrors(String definition) {
+        Map<String, Integer> result = new HashMap<String, Integer>();
+        if (definition == null || definition.isEmpty()) {
+            return result;
+        }
+        for (String entry : definition.split(",")) {
+            int pos = entry.indexOf('=');
+            if (pos <= 0) {
+                continue;
+            }
+            try {
+                int errors = Integer.parseInt(entry.substring(pos + 1).trim());
+                if (errors > 0) {
+                    result.put(entry.substring(0, pos).trim().toLowerCase(), errors);
+                }
+            } catch (NumberFormatException e) {
+                logger.warning("invalid max errors definition '" + entry + "' - " + e.getMessage());
+            }
+        }
+        return result;
+    }
+
     /**
      * This method build a new XMLTraingData object and based on the given text
      * content and the current workitem. The method also computes the quality level
@@ -72,37 +179,48 @@ public class TrainingDataBuilder {
     public XMLTrainingData build() {
         boolean debug = logger.isLoggable(Level.FINE);
 
-        debug = true;
-
         // set quality level to full and reduce the level during the build process
         trainingData.setQuality(XMLTrainingData.TRAININGDATA_QUALITY_GOOD);
-        // now lets see if we find some of our item values....
-        for (MLEntity mlEntity : mlEntities) {
-            String itemName = mlEntity.getItemName().toLowerCase().trim();
+
+        // resolve the item names and values first. A mapping can be the source of a
+        // later mapping and is therefore done in the order of the entity list
+        int size = mlEntities.size();
+        String[] itemNames = new String[size];
+        Object[] values = new Object[size];
+        boolean[] hasValue = new boolean[size];
+        int[] errors = new int[size];
+        for (int i = 0; i < size; i++) {
+            String itemName = mlEntities.get(i).getItemName().toLowerCase().trim();
             // if the itemName contains a | character than we do a mapping here.....
             if (itemName.contains("|")) {
+                String sourceName = itemName.substring(0, itemName.indexOf('|')).trim();
                 String entityName = itemName.substring(itemName.indexOf('|') + 1).trim();
-                // replace item in workitem....
-                workitem.replaceItemValue(entityName,
-                        workitem.getItemValue(itemName.substring(0, itemName.indexOf('|')).trim()));
+                // replace item in the overlay....
+                mappedItems.replaceItemValue(entityName, getItems(sourceName).getItemValue(sourceName));
                 itemName = entityName;
             }
-
-            if (!workitem.isItemEmpty(itemName)) {
+            itemNames[i] = itemName;
+            errors[i] = getMaxErrors(mlEntities.get(i));
+            ItemCollection items = getItems(itemName);
+            if (!items.isItemEmpty(itemName)) {
                 // we only analyze the first value...
-                Object value = workitem.getItemValue(itemName).get(0);
-                List<XMLTrainingEntity> trainingEntities = createTrainingEntities(trainingData.getText(), value,
-                        itemName, locals);
-
-                if (trainingEntities != null && trainingEntities.size() > 0) {
-                    for (XMLTrainingEntity trainingEntity : trainingEntities) {
-                        trainingData.addTrainingEntity(trainingEntity);
-                        if (debug) {
-                            logger.finest("......found entity " + trainingEntity.getLabel() + " = '"
-                                    + trainingEntity.getValue() + "' at " + " " + trainingEntity.getStart() + ","
-                                    + trainingEntity.getStop());
-                        }
-                    }
+                values[i] = items.getItemValue(itemName).get(0);
+                hasValue[i] = true;
+            }
+        }
+
+        // now lets see if we find some of our item values....
+        List<TrainingSpans> entityMatches = findTrainingSpans(itemNames, values, hasValue, errors);
+
+        // the label id of a span is the index of the entity
+        TrainingSpans spans = new TrainingSpans(itemNames);
+        for (int i = 0; i < size; i++) {
+            MLEntity mlEntity = mlEntities.get(i);
+            if (hasValue[i]) {
+                TrainingSpans entitySpans = entityMatches.get(i);
+
+                if (entitySpans != null && entitySpans.size() > 0) {
+                    spans.addAll(entitySpans);
                 } else {
                     // no matching value was found for this entity, the quality level is bad if the
                     // entity has
@@ -125,6 +243,16 @@ public class TrainingDataBuilder {
             }
         }
 
+        // spaCy rejects overlapping spans also for different labels
+        spans.removeOverlapping();
+        for (XMLTrainingEntity trainingEntity : spans.toEntities(trainingData.getText())) {
+            trainingData.addTrainingEntity(trainingEntity);
+            if (debug) {
+                logger.finest("......found entity " + trainingEntity.getLabel() + " = '" + trainingEntity.getValue()
+                        + "' at " + " " + trainingEntity.getStart() + "," + trainingEntity.getStop());
+            }
+        }
+
         // if the trainingData contains no entities set quality to
         // TRAININGDATA_QUALITY_LEVEL_BAD
         if (trainingData.getEntities().size() == 0) {
@@ -135,6 +263,93 @@ public class TrainingDataBuilder {
         return trainingData;
     }
 
+    /**
+     * Returns the overlay if the item was remapped, otherwise the original
+     * workitem.
+     * 
+     * @param itemName
+     * @return ItemCollection holding the item
+     */
+    private ItemCollection getItems(String itemName) {
+        if (mappedItems.hasItem(itemName)) {
+            return mappedItems;
+        }
+        return workitem;
+    }
+
+    /**
+     * Returns the maximum errors for the item type of an MLEntity.
+     * 
+     * @param mlEntity
+     * @return errors or 0 if no errors are allowed
+     */
+    private int getMaxErrors(MLEntity mlEntity) {
+        if (maxErrors == null || maxErrors.isEmpty()) {
+            return 0;
+        }
+        String itemType = mlEntity.getItemType();
+        if (itemType == null || itemType.isEmpty()) {
+            itemType = "text";
+        }
+        Integer result = maxErrors.get(itemType.toLowerCase());
+        return result == null ? 0 : result;
+    }
+
+    /**
+     * Creates the training spans for all entity values. If an Executor is set
+     * and more than one value is given, the values are processed in parallel. The
+     * result list contains the spans of each value at the position of the value.
+     * 
+     * @param itemNames - item name of each entity
+     * @param values    - value of each entity
+     * @param hasValue  - true if an entity has a value
+     * @param errors    - maximum errors of each entity
+     * @return list of training spans per entity
+     */
+    private List<TrainingSpans> findTrainingSpans(String[] itemNames, Object[] values, boolean[] hasValue,
+            int[] errors) {
+        List<TrainingSpans> result = new ArrayList<TrainingSpans>(Collections.nCopies(values.length, null));
+        String text = trainingData.getText();
+        int count = 0;
+        for (boolean b : hasValue) {
+            count += b ? 1 : 0;
+        }
+        if (executor == null || count < 2) {
+            for (int i = 0; i < values.length; i++) {
+                if (hasValue[i]) {
+                    result.set(i, createTrainingSpans(text, values[i], itemNames, i, locals, errors[i]));
+                }
+            }
+            return result;
+        }
+
+        List<CompletableFuture<TrainingSpans>> tasks = new ArrayList<CompletableFuture<TrainingSpans>>(
+                Collections.nCopies(values.length, null));
+        for (int i = 0; i < values.length; i++) {
+            if (hasValue[i]) {
+                Object value = values[i];
+                int labelId = i;
+                int maxErrors = errors[i];
+                tasks.set(i, CompletableFuture.supplyAsync(
+                        () -> createTrainingSpans(text, value, itemNames, labelId, locals, maxErrors), executor));
+            }
+        }
+        // join in the order of the entity list
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (tasks.get(i) != null) {
+                    result.set(i, tasks.get(i).join());
+                }
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+        return result;
+    }
+
     /**
      * This helper method computes the start/stop position of a substring in a text.
      * It is important to ensure that the start/stop positions are as expected by
@@ -161,6 +376,44 @@ public class TrainingDataBuilder {
      */
     protected List<XMLTrainingEntity> createTrainingEntities(String text, Object entity, String label,
             List<Locale> locals) {
+        return createTrainingEntities(text, entity, label, locals, 0);
+    }
+
+    /**
+     * Creates the training entities for an entity value. If no variant of the
+     * value is found in the text and maxErrors is greater than 0, the variants are
+     * searched with up to maxErrors errors.
+     * 
+     * @param text
+     * @param entity
+     * @param label
+     * @param locals
+     * @param maxErrors
+     * @return
+     */
+    protected List<XMLTrainingEntity> createTrainingEntities(String text, Object entity, String label,
+            List<Locale> locals, int maxErrors) {
+        TrainingSpans spans = createTrainingSpans(text, entity, new String[] { label }, 0, locals, maxErrors);
+        if (spans == null) {
+            return null;
+        }
+        return spans.toEntities(text);
+    }
+
+    /**
+     * Creates the training spans for an entity value. Overlapping spans of the
+     * value variants are removed.
+     * 
+     * @param text
+     * @param entity
+     * @param labels  - label table
+     * @param labelId - label of the entity in the label table
+     * @param locals
+     * @param maxErrors
+     * @return spans or null if the text or the value is empty
+     */
+    private TrainingSpans createTrainingSpans(String text, Object entity, String[] labels, int labelId,
+            List<Locale> locals, int maxErrors) {
         boolean debug = logger.isLoggable(Level.FINE);
 
         if (text == null || text.isEmpty()) {
@@ -171,24 +424,34 @@ public class TrainingDataBuilder {
         }
 
         if (debug) {
-            logger.finest(".......analyzing: " + label + " value= " + entity + " object class="
+            logger.finest(".......analyzing: " + labels[labelId] + " value= " + entity + " object class="
                     + entity.getClass().getSimpleName());
         }
 
         // adapt value formats...
-        // fire event
-        Set<String> enityTextVariants = new HashSet<String>();
-
-        if (entityObjectEvents != null) {
-            entityObjectEvents.fire(new EntityObjectEvent(entity, enityTextVariants, locals));
-        } else {
-            logger.warning("CDI Support is missing - AnalyzeEntityEvent Not Supported!");
+        Set<String> enityTextVariants = null;
+        if (entityVariantCache != null) {
+            enityTextVariants = entityVariantCache.get(entity, locals);
         }
+        if (enityTextVariants == null) {
+            // fire event
+            enityTextVariants = new HashSet<String>();
+            if (entityAdapterRegistry != null) {
+                entityAdapterRegistry.fireObjectEvent(new EntityObjectEvent(entity, enityTextVariants, locals));
+            } else if (entityObjectEvents != null) {
+                entityObjectEvents.fire(new EntityObjectEvent(entity, enityTextVariants, locals));
+            } else {
+                logger.warning("CDI Support is missing - AnalyzeEntityEvent Not Supported!");
+            }
 
-        // if the EntityAdapters provide no value, than we are adding the plain string
-        // value only..
-        if (enityTextVariants.size() == 0) {
-            enityTextVariants.add(entity.toString());
+            // if the EntityAdapters provide no value, than we are adding the plain string
+            // value only..
+            if (enityTextVariants.size() == 0) {
+                enityTextVariants.add(entity.toString());
+            }
+            if (entityVariantCache != null && (entityObjectEvents != null || entityAdapterRegistry != null)) {
+                entityVariantCache.put(entity, locals, enityTextVariants);
+            }
         }
 
         if (debug) {
@@ -198,9 +461,10 @@ public class TrainingDataBuilder {
             }
         }
 
-        List<XMLTrainingEntity> result = collectTrainingEntities(text, enityTextVariants, label);
+        TrainingSpans result = new TrainingSpans(labels);
+        collectTrainingSpans(text, enityTextVariants, result, labelId, maxErrors);
         // cleanup duplicates
-        cleanOvelappingEntities(result);
+        result.removeOverlapping();
 
         return result;
 
@@ -208,7 +472,11 @@ public class TrainingDataBuilder {
 
     /**
      * This method builds a List of XMLTrainingEntity for all occurrences of
-     * entityVariants in a given text
+     * entityVariants in a given text.
+     * <p>
+     * All variants are searched in one pass over the text by a
+     * {@link AhoCorasickMatcher}. The entities are returned in the order of their
+     * end position.
      * 
      * @param text
      * @param enityVariants
@@ -216,33 +484,60 @@ public class TrainingDataBuilder {
      * @return
      */
     protected List<XMLTrainingEntity> collectTrainingEntities(String text, Set<String> enityVariants, String label) {
-        List<XMLTrainingEntity> result = new ArrayList<XMLTrainingEntity>();
-        // test all variants...
-        for (String entityVariant : enityVariants) {
+        return collectTrainingEntities(text, enityVariants, label, 0);
+    }
 
-            // clean the entityVariant text....
-            entityVariant = XMLTrainingData.cleanTextdata(entityVariant).trim();
+    /**
+     * Builds a List of XMLTrainingEntity for all occurrences of entityVariants in
+     * a given text. If no variant is found and maxErrors is greater than 0, the
+     * variants are searched by an {@link ApproximateMatcher}. The value of an
+     * approximate entity is the matching part of the text.
+     * 
+     * @param text
+     * @param enityVariants
+     * @param label
+     * @param maxErrors
+     * @return
+     */
+    protected List<XMLTrainingEntity> collectTrainingEntities(String text, Set<String> enityVariants, String label,
+            int maxErrors) {
+        TrainingSpans spans = new TrainingSpans(new String[] { label });
+        collectTrainingSpans(text, enityVariants, spans, 0, maxErrors);
+        return spans.toEntities(text);
+    }
 
-            // find all matches....
-            int indexPos = 0;
-            while (true) {
-                int start = text.indexOf(entityVariant, indexPos);
-                if (start > -1) {
-                    XMLTrainingEntity trainingEntity = new XMLTrainingEntity();
-                    trainingEntity.setLabel(label);
-                    trainingEntity.setValue(entityVariant);
-                    trainingEntity.setStart(start);
-                    trainingEntity.setStop(start + entityVariant.length());
-                    result.add(trainingEntity);
-                    indexPos = trainingEntity.getStop();
-                } else {
-                    // no more matches
-                    break;
-                }
+    /**
+     * Adds the spans of all occurrences of entityVariants in a given text. See
+     * {@link #collectTrainingEntities(String, Set, String, int)}.
+     * 
+     * @param text
+     * @param enityVariants
+     * @param spans         - the spans to add the occurrences to
+     * @param labelId       - label of the entity
+     * @param maxErrors
+     */
+    private void collectTrainingSpans(String text, Set<String> enityVariants, TrainingSpans spans, int labelId,
+            int maxErrors) {
+        // clean the entityVariant texts....
+        Set<String> cleanedVariants = new LinkedHashSet<String>();
+        for (String entityVariant : enityVariants) {
+            entityVariant = XMLTrainingData.cleanTextdata(entityVariant).trim();
+            if (!entityVariant.isEmpty()) {
+                cleanedVariants.add(entityVariant);
             }
         }
-        return result;
-
+        if (cleanedVariants.isEmpty()) {
+            return;
+        }
+        List<String> variants = new ArrayList<String>(cleanedVariants);
+        int size = spans.size();
+        // find all matches of all variants....
+        new AhoCorasickMatcher(variants).match(text, (pattern, start, stop) -> spans.add(labelId, start, stop));
+        if (spans.size() == size && maxErrors > 0) {
+            // no exact match - search the variants with errors
+            new ApproximateMatcher(variants, maxErrors).match(text,
+                    (pattern, start, stop) -> spans.add(labelId, start, stop));
+        }
     }
 
     /**
@@ -251,33 +546,27 @@ public class TrainingDataBuilder {
      * method can be used to remove duplicates from a List of XMLTrainingEntity
      * objects.
      * <p>
-     * This method is called by the createTrainingEntites.
+     * The entities are removed by the same rules as the spans of the build
+     * method, see {@link TrainingSpans#nonOverlapping()}. The remaining entities
+     * are ordered by their start position.
      * 
      */
     protected void cleanOvelappingEntities(List<XMLTrainingEntity> trainingEntites) {
-
-        List<XMLTrainingEntity> overlapps = new ArrayList<XMLTrainingEntity>();
-
-        for (XMLTrainingEntity analyzeEntity : trainingEntites) {
-            // analyze
-            for (XMLTrainingEntity entity : trainingEntites) {
-                if (!entity.equals(analyzeEntity)) {
-                    if (entity.getStart() >= analyzeEntity.getStart() && entity.getStop() <= analyzeEntity.getStop()) {
-                        overlapps.add(entity);
-                    }
-                }
-
-            }
+        if (trainingEntites.size() < 2) {
+            return;
         }
-
-        // remove overlapping entities....
-        for (Iterator<XMLTrainingEntity> iter = trainingEntites.listIterator(); iter.hasNext();) {
-            XMLTrainingEntity a = iter.next();
-            if (overlapps.contains(a)) {
-                iter.remove();
-            }
+        TrainingSpans spans = new TrainingSpans(new String[] { null });
+        for (XMLTrainingEntity entity : trainingEntites) {
+            spans.add(0, entity.getStart(), entity.getStop());
+        }
+        int[] kept = spans.nonOverlapping();
+        List<XMLTrainingEntity> result = new ArrayList<XMLTrainingEntity>(kept.length);
+        for (int index : kept) {
+            result.add(trainingEntites.get(index));
         }
 
+        trainingEntites.clear();
+        trainingEntites.addAll(result);
     }
 
 }
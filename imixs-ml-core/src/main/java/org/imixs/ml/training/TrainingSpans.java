@@ -0,0 +1,190 @@
+package org.imixs.ml.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.imixs.ml.xml.XMLTrainingEntity;
+
+/**
+ * The TrainingSpans hold the positions of training entities found in a text.
+ * Each span is stored as a label id, a start and a stop position in parallel
+ * int arrays. The label id is the index in a label table shared by all spans
+ * of a TrainingDataBuilder.
+ * <p>
+ * The spans do not hold the entity values. XMLTrainingEntity objects are only
+ * created by the method {@link #toEntities(String)} for the remaining spans
+ * after overlapping spans are removed. So the memory for a document does not
+ * grow with each repeated occurrence of a value.
+ *
+ * @author rsoika
+ */
+public class TrainingSpans {
+
+    private String[] labels;
+    private int[] labelIds;
+    private int[] starts;
+    private int[] stops;
+    private int size = 0;
+
+    /**
+     * Creates an empty span list for a label table.
+     *
+     * @param labels - the labels referred to by the label ids
+     */
+    public TrainingSpans(String[] labels) {
+        this.labels = labels;
+        labelIds = new int[8];
+        starts = new int[8];
+        stops = new int[8];
+    }
+
+    /**
+     * Adds a span.
+     *
+     * @param labelId - index in the label table
+     * @param start
+     * @param stop
+     */
+    public void add(int labelId, int start, int stop) {
+        if (size == starts.length) {
+            int capacity = size * 2;
+            labelIds = Arrays.copyOf(labelIds, capacity);
+            starts = Arrays.copyOf(starts, capacity);
+            stops = Arrays.copyOf(stops, capacity);
+        }
+        labelIds[size] = labelId;
+        starts[size] = start;
+        stops[size] = stop;
+        size++;
+    }
+
+    /**
+     * Adds all spans of another span list with the same label table.
+     *
+     * @param spans
+     */
+    public void addAll(TrainingSpans spans) {
+        for (int i = 0; i < spans.size; i++) {
+            add(spans.labelIds[i], spans.starts[i], spans.stops[i]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getStart(int index) {
+        return starts[index];
+    }
+
+    public int getStop(int index) {
+        return stops[index];
+    }
+
+    public String getLabel(int index) {
+        return labels[labelIds[index]];
+    }
+
+    /**
+     * Removes overlapping spans. See {@link #nonOverlapping()}.
+     */
+    public void removeOverlapping() {
+        int[] kept = nonOverlapping();
+        int[] keptLabelIds = new int[Math.max(8, kept.length)];
+        int[] keptStarts = new int[keptLabelIds.length];
+        int[] keptStops = new int[keptLabelIds.length];
+        for (int i = 0; i < kept.length; i++) {
+            keptLabelIds[i] = labelIds[kept[i]];
+            keptStarts[i] = starts[kept[i]];
+            keptStops[i] = stops[kept[i]];
+        }
+        labelIds = keptLabelIds;
+        starts = keptStarts;
+        stops = keptStops;
+        size = kept.length;
+    }
+
+    /**
+     * Returns the indices of the spans which do not overlap.
+     * <p>
+     * The spans are sorted by their start position and longer spans first. A
+     * sweep over the sorted spans keeps a span only if it does not overlap the
+     * previously kept span. If two spans overlap partially, the longer one wins.
+     * Spans contained in a longer span and duplicates are removed. Of equal spans
+     * the first one is kept.
+     *
+     * @return indices of the remaining spans ordered by their start position
+     */
+    public int[] nonOverlapping() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        sort(order, new int[size], 0, size);
+
+        int[] result = new int[size];
+        int count = 0;
+        int last = -1;
+        for (int i : order) {
+            if (last == -1 || starts[i] >= stops[last]) {
+                result[count++] = i;
+                last = i;
+            } else if (stops[i] - starts[i] > stops[last] - starts[last]) {
+                // partial overlap with a longer span - all spans kept before end
+                // before the start of the last kept span and are not affected
+                result[count - 1] = i;
+                last = i;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Creates the XMLTrainingEntity objects for all spans. The value of an entity
+     * is taken from the text when it is requested.
+     *
+     * @param text - the text the spans refer to
+     * @return list of training entities
+     */
+    public List<XMLTrainingEntity> toEntities(String text) {
+        List<XMLTrainingEntity> result = new ArrayList<XMLTrainingEntity>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new XMLTrainingEntity(getLabel(i), text, starts[i], stops[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Stable merge sort of span indices by start position ascending and stop
+     * position descending.
+     */
+    private void sort(int[] order, int[] buffer, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        sort(order, buffer, from, middle);
+        sort(order, buffer, middle, to);
+        if (compare(order[middle - 1], order[middle]) <= 0) {
+            return;
+        }
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right]) <= 0)) {
+                order[i] = buffer[left++];
+            } else {
+                order[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compare(int a, int b) {
+        if (starts[a] != starts[b]) {
+            return Integer.compare(starts[a], starts[b]);
+        }
+        return Integer.compare(stops[b], stops[a]);
+    }
+}
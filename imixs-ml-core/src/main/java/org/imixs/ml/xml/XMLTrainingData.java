@@ -31,7 +31,6 @@ package org.imixs.ml.xml;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.function.IntPredicate;
 
 import jakarta.xml.bind.annotation.XmlRootElement;
 import jakarta.xml.bind.annotation.XmlTransient;
@@ -155,28 +154,51 @@ public class XMLTrainingData implements Serializable {
      * This method is called by the setText() method of the XMLTraingData class and
      * the XMLAnalyseText class. The method ensures that the text is clean for any
      * ML training or analyse procedure.
+     * <p>
+     * The text is cleaned in a single pass over its characters. If the text
+     * contains no characters to be cleaned, the same instance is returned without
+     * any allocation.
      * 
      * @param text
      * @return
      */
     public static String cleanTextdata(String text) {
-        String result = text;
-        // strip control characters but prevent newline and tab
-        result = stripChars(result, c -> (c > '\u001F' && c != '\u007F') || (c == '\n') || (c == '\t'));
-        // replace JSON structure characters with spaces
-        result = result.replaceAll("[{}\"]", " ");
-        return result;
+        int length = text.length();
+        // fast path - most texts contain nothing to clean and are returned as is
+        int pos = 0;
+        while (pos < length && !isSpecialChar(text.charAt(pos))) {
+            pos++;
+        }
+        if (pos == length) {
+            return text;
+        }
+        char[] result = new char[length];
+        text.getChars(0, pos, result, 0);
+        int count = pos;
+        for (; pos < length; pos++) {
+            char c = text.charAt(pos);
+            if (c == '{' || c == '}' || c == '"') {
+                // replace JSON structure characters with spaces
+                result[count++] = ' ';
+            } else if ((c > '\u001F' && c != '\u007F') || c == '\n' || c == '\t') {
+                result[count++] = c;
+            }
+            // strip control characters but prevent newline and tab. A control
+            // character is never part of a surrogate pair.
+        }
+        return new String(result, 0, count);
     }
 
     /**
-     * Helper method to strip Chars form a string.
+     * Returns true if a character is removed or replaced by cleanTextdata.
      * 
-     * @param s
-     * @param include
+     * @param c
      * @return
      */
-    private static String stripChars(String s, IntPredicate include) {
-        return s.codePoints().filter(include::test)
-                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+    private static boolean isSpecialChar(char c) {
+        if (c > '\u007F') {
+            return false;
+        }
+        return c == '{' || c == '}' || c == '"' || c == '\u007F' || (c <= '\u001F' && c != '\n' && c != '\t');
     }
 }
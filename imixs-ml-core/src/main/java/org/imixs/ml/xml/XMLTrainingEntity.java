@@ -55,8 +55,31 @@ public class XMLTrainingEntity implements Serializable {
     private int start;
     
     private int stop;
-    
-    
+
+    // the text the entity was found in. The value is taken from the text on demand
+    private transient String text;
+
+    public XMLTrainingEntity() {
+        super();
+    }
+
+    /**
+     * Creates an entity for a text span. The value is the text between start and
+     * stop and is created only if requested by getValue.
+     * 
+     * @param label
+     * @param text
+     * @param start
+     * @param stop
+     */
+    public XMLTrainingEntity(String label, String text, int start, int stop) {
+        super();
+        this.label = label;
+        this.text = text;
+        this.start = start;
+        this.stop = stop;
+    }
+
     @XmlElement
     public String getLabel() {
         return label;
@@ -81,6 +104,9 @@ public class XMLTrainingEntity implements Serializable {
     
     @XmlTransient
     public String getValue() {
+        if (value == null && text != null) {
+            value = text.substring(start, stop);
+        }
         return value;
     }
     public void setValue(String value) {
@@ -10,6 +10,7 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 import org.imixs.ml.adapters.CurrencyAdapter;
+import org.imixs.ml.adapters.CurrencyTextScanner;
 import org.imixs.ml.events.EntityObjectEvent;
 import org.imixs.ml.events.EntityTextEvent;
 import org.imixs.workflow.exceptions.PluginException;
@@ -324,4 +325,21 @@ public class TestCurrencyAdapter {
         Assert.assertEquals(new Float("3110.34"), f);
     }
 
+    /**
+     * Test the CurrencyTextScanner with text following the amount and the fallback
+     * to the next locale if no number can be read.
+     */
+    @Test
+    public void testCurrencyTextScanner() {
+        List<Locale> locals = new ArrayList<Locale>();
+        locals.add(Locale.GERMAN);
+        locals.add(Locale.UK);
+
+        Assert.assertEquals(new BigDecimal("1500.0"), CurrencyTextScanner.scan("1.500,00 EUR", locals));
+        Assert.assertEquals(new BigDecimal("3695000.0"), CurrencyTextScanner.scan("3.695.000", locals));
+        Assert.assertEquals(new BigDecimal("-12.5"), CurrencyTextScanner.scan("-12,5", locals));
+        Assert.assertEquals(new BigDecimal("0.3"), CurrencyTextScanner.scan(".,3", locals));
+        Assert.assertNull(CurrencyTextScanner.scan("EUR", locals));
+    }
+
 }
@@ -254,6 +254,32 @@ public class TestDateAdapter {
     }
     
 
+    /**
+     * Test a list of variants where only the last one is a date. Variants without
+     * digits are skipped.
+     */
+    @Test
+    public void testVariantList() {
+        List<Locale> locals = new ArrayList<Locale>();
+        locals.add(Locale.UK);
+        locals.add(Locale.GERMANY);
+
+        List<String> itemValueList = new ArrayList<String>();
+        itemValueList.add("Invoice Date");
+        itemValueList.add("Mai");
+        itemValueList.add("4711");
+        itemValueList.add("14.04.2021");
+        EntityTextEvent entityTextEvent = new EntityTextEvent(itemValueList, locals, "date", 0);
+        new DateAdapter().onTextEvent(entityTextEvent);
+        Object o = entityTextEvent.getItemValue();
+        Assert.assertTrue(o instanceof Date);
+        Calendar cal = Calendar.getInstance();
+        cal.setTime((Date) o);
+        Assert.assertEquals(2021, cal.get(Calendar.YEAR));
+        Assert.assertEquals(3, cal.get(Calendar.MONTH));
+        Assert.assertEquals(14, cal.get(Calendar.DAY_OF_MONTH));
+    }
+
     /**
      * Test conversion of German long date "MAI 18, 2021" to Date object
      * 
@@ -0,0 +1,116 @@
+package org.imixs.ml.core.adapters;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.imixs.ml.adapters.EntityAdapter;
+import org.imixs.ml.adapters.EntityAdapterRegistry;
+import org.imixs.ml.events.EntityObjectEvent;
+import org.imixs.ml.events.EntityTextEvent;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the EntityAdapterRegistry
+ *
+ * @author rsoika
+ */
+public class TestEntityAdapterRegistry {
+
+    protected EntityAdapterRegistry registry = null;
+    protected List<Locale> locals = Arrays.asList(Locale.GERMAN, Locale.UK);
+
+    @Before
+    public void setup() {
+        registry = new EntityAdapterRegistry();
+        registry.init();
+    }
+
+    /**
+     * The object events are dispatched by the value class. Subclasses are
+     * dispatched to the adapter of the super class.
+     */
+    @Test
+    public void testObjectEvents() {
+        Set<String> variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent(new GregorianCalendar(2020, 3, 30), variants, locals));
+        Assert.assertTrue(variants.contains("30.04.2020"));
+
+        variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent(new BigDecimal("1500.00"), variants, locals));
+        Assert.assertTrue(variants.contains("1.500,00"));
+
+        variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent("DE69 5095 1469 0005 0111 11", variants, locals));
+        Assert.assertTrue(variants.contains("DE69509514690005011111"));
+
+        // no adapter and no CDI support
+        variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent(Integer.valueOf(42), variants, locals));
+        Assert.assertTrue(variants.isEmpty());
+    }
+
+    /**
+     * The text events are dispatched by the item type.
+     */
+    @Test
+    public void testTextEvents() {
+        EntityTextEvent event = new EntityTextEvent(Arrays.asList("1.500,00"), locals, "currency", 0);
+        registry.fireTextEvent(event);
+        Assert.assertEquals(Float.valueOf(1500.0f), event.getItemValue());
+
+        // the date adapter is not called for the type iban
+        event = new EntityTextEvent(Arrays.asList("30.04.2020"), locals, "iban", 0);
+        registry.fireTextEvent(event);
+        Assert.assertNull(event.getItemValue());
+    }
+
+    /**
+     * Test a custom adapter.
+     */
+    @Test
+    public void testCustomAdapter() {
+        registry.register(new EntityAdapter() {
+            @Override
+            public String getItemType() {
+                return "Number";
+            }
+
+            @Override
+            public List<Class<?>> getValueClasses() {
+                return Collections.singletonList(Number.class);
+            }
+
+            @Override
+            public void onEvent(EntityObjectEvent event) {
+                event.getEnityTextVariants().add("#" + event.getValue());
+            }
+
+            @Override
+            public void onTextEvent(EntityTextEvent event) {
+                event.setItemValue(Integer.valueOf(event.getTextVariants().get(0)));
+            }
+        });
+
+        Set<String> variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent(Integer.valueOf(42), variants, locals));
+        Assert.assertEquals(Collections.singleton("#42"), variants);
+
+        // BigDecimal is also a Number
+        variants = new HashSet<String>();
+        registry.fireObjectEvent(new EntityObjectEvent(new BigDecimal("1500.00"), variants, locals));
+        Assert.assertTrue(variants.contains("1.500,00"));
+        Assert.assertTrue(variants.contains("#1500.00"));
+
+        EntityTextEvent event = new EntityTextEvent(Arrays.asList("42"), locals, "number", 0);
+        registry.fireTextEvent(event);
+        Assert.assertEquals(42, event.getItemValue());
+    }
+}
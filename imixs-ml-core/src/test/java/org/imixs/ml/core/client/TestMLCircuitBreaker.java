@@ -0,0 +1,74 @@
+package org.imixs.ml.core.client;
+
+import org.imixs.ml.core.MLCircuitBreaker;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the MLCircuitBreaker
+ * 
+ * @author rsoika
+ */
+public class TestMLCircuitBreaker {
+
+    protected MLCircuitBreaker breaker = null;
+
+    @Before
+    public void setup() {
+        breaker = new MLCircuitBreaker("http://localhost:8000", 3, 0);
+    }
+
+    /**
+     * The breaker opens after the threshold of consecutive failures
+     */
+    @Test
+    public void testOpen() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        Assert.assertTrue(breaker.isClosed());
+        breaker.recordFailure();
+        Assert.assertFalse(breaker.isClosed());
+        Assert.assertEquals(MLCircuitBreaker.STATE_OPEN, breaker.getState());
+        Assert.assertEquals(1, breaker.getOpenCount());
+    }
+
+    /**
+     * A success resets the consecutive failures
+     */
+    @Test
+    public void testReset() {
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordSuccess();
+        breaker.recordFailure();
+        Assert.assertTrue(breaker.isClosed());
+        Assert.assertEquals(1, breaker.getFailures());
+    }
+
+    /**
+     * Only one caller can start a probe. A failed probe reopens the breaker, a
+     * successful probe closes it.
+     */
+    @Test
+    public void testProbe() {
+        Assert.assertFalse(breaker.tryStartProbe());
+        breaker.recordFailure();
+        breaker.recordFailure();
+        breaker.recordFailure();
+
+        Assert.assertTrue(breaker.tryStartProbe());
+        Assert.assertEquals(MLCircuitBreaker.STATE_HALF_OPEN, breaker.getState());
+        Assert.assertFalse(breaker.tryStartProbe());
+
+        breaker.recordFailure();
+        Assert.assertEquals(MLCircuitBreaker.STATE_OPEN, breaker.getState());
+        Assert.assertEquals(2, breaker.getOpenCount());
+
+        Assert.assertTrue(breaker.tryStartProbe());
+        breaker.recordSuccess();
+        Assert.assertTrue(breaker.isClosed());
+        Assert.assertEquals(0, breaker.getFailures());
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.imixs.ml.core.client;
+
+import org.imixs.ml.core.MLClient;
+import org.imixs.ml.core.MLReplica;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the MLClient endpoint configuration
+ * 
+ * @author rsoika
+ */
+public class TestMLClient {
+
+    /**
+     * test a single endpoint
+     */
+    @Test
+    public void testSingleEndpoint() {
+        MLClient client = new MLClient("http://imixs-ml-spacy:8000/", 5);
+        Assert.assertEquals("http://imixs-ml-spacy:8000", client.getServiceEndpoint());
+        Assert.assertEquals(1, client.getReplicas().size());
+        Assert.assertEquals(5, client.getPoolSize());
+        Assert.assertTrue(client.isIdle());
+    }
+
+    /**
+     * test a list of replicas
+     */
+    @Test
+    public void testReplicas() {
+        MLClient client = new MLClient(" http://spacy-1:8000/, http://spacy-2:8000,,", 5);
+        Assert.assertEquals("http://spacy-1:8000,http://spacy-2:8000", client.getServiceEndpoint());
+        Assert.assertEquals(2, client.getReplicas().size());
+        Assert.assertEquals("http://spacy-1:8000", client.getReplicas().get(0).getServiceEndpoint());
+        Assert.assertEquals("http://spacy-2:8000", client.getReplicas().get(1).getServiceEndpoint());
+        // the pool size is per replica
+        Assert.assertEquals(10, client.getPoolSize());
+        // each replica has its own connections
+        for (MLReplica replica : client.getReplicas()) {
+            Assert.assertEquals(5, replica.getPoolSize());
+            Assert.assertEquals(5, replica.getAvailableConnections());
+        }
+        Assert.assertTrue(client.isIdle());
+    }
+
+}
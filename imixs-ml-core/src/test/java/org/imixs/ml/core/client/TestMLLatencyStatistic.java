@@ -0,0 +1,45 @@
+package org.imixs.ml.core.client;
+
+import org.imixs.ml.core.MLLatencyStatistic;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the MLLatencyStatistic
+ * 
+ * @author rsoika
+ */
+public class TestMLLatencyStatistic {
+
+    /**
+     * test percentiles
+     */
+    @Test
+    public void testPercentile() {
+        MLLatencyStatistic statistic = new MLLatencyStatistic(100);
+        Assert.assertEquals(-1, statistic.getPercentile(95));
+        for (int i = 100; i > 0; i--) {
+            statistic.record(i);
+        }
+        Assert.assertEquals(100, statistic.getCount());
+        Assert.assertEquals(95, statistic.getPercentile(95));
+        Assert.assertEquals(50, statistic.getPercentile(50));
+        Assert.assertEquals(100, statistic.getPercentile(100));
+        Assert.assertEquals(1, statistic.getPercentile(0));
+    }
+
+    /**
+     * The oldest latencies are replaced
+     */
+    @Test
+    public void testRingBuffer() {
+        MLLatencyStatistic statistic = new MLLatencyStatistic(3);
+        statistic.record(1000);
+        statistic.record(10);
+        statistic.record(20);
+        statistic.record(30);
+        Assert.assertEquals(3, statistic.getCount());
+        Assert.assertEquals(30, statistic.getPercentile(100));
+    }
+
+}
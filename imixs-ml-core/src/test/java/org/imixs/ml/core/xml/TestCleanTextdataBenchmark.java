@@ -0,0 +1,107 @@
+package org.imixs.ml.core.xml;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.logging.Logger;
+
+import org.imixs.ml.xml.XMLTrainingData;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Benchmark of the allocations per document of XMLTrainingData.cleanTextdata
+ * compared to the former stream and regex based implementation.
+ * <p>
+ * The allocated bytes are measured with the thread allocation counter of the
+ * JVM. The test is skipped if the JVM does not support this counter.
+ * 
+ * @author rsoika
+ */
+public class TestCleanTextdataBenchmark {
+
+    private static Logger logger = Logger.getLogger(TestCleanTextdataBenchmark.class.getName());
+
+    private static final int ITERATIONS = 200;
+
+    private com.sun.management.ThreadMXBean threadBean = null;
+    private String cleanDocument = null;
+    private String dirtyDocument = null;
+
+    @Before
+    public void setup() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        // an OCR text of about 20k characters
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            sb.append("Invoice No. 2020-").append(i).append("\tDate: 02.06.2020\nTotal amount 1.500,00 EUR\n");
+        }
+        cleanDocument = sb.toString();
+        dirtyDocument = cleanDocument.replace("Total", "{Total}\u000C").replace("EUR", "\"EUR\"\r");
+    }
+
+    /**
+     * The new implementation must produce the same result as the former one.
+     */
+    @Test
+    public void testSameResult() {
+        Assert.assertEquals(legacyCleanTextdata(cleanDocument), XMLTrainingData.cleanTextdata(cleanDocument));
+        Assert.assertEquals(legacyCleanTextdata(dirtyDocument), XMLTrainingData.cleanTextdata(dirtyDocument));
+    }
+
+    /**
+     * Compares the allocated bytes per document. A clean document is returned
+     * without a copy, a document with special characters is copied only once.
+     */
+    @Test
+    public void testAllocationsPerDocument() {
+        long legacyClean = measure(TestCleanTextdataBenchmark::legacyCleanTextdata, cleanDocument);
+        long clean = measure(XMLTrainingData::cleanTextdata, cleanDocument);
+        long legacyDirty = measure(TestCleanTextdataBenchmark::legacyCleanTextdata, dirtyDocument);
+        long dirty = measure(XMLTrainingData::cleanTextdata, dirtyDocument);
+
+        logger.info("document size: " + cleanDocument.length() + " chars");
+        logger.info("clean text - bytes per document: legacy=" + legacyClean + " new=" + clean);
+        logger.info("special chars - bytes per document: legacy=" + legacyDirty + " new=" + dirty);
+
+        Assert.assertTrue(clean < legacyClean / 10);
+        Assert.assertTrue(dirty < legacyDirty / 2);
+    }
+
+    /**
+     * Returns the average bytes allocated by one call of the function.
+     */
+    private long measure(Function<String, String> function, String document) {
+        long threadId = Thread.currentThread().getId();
+        // warm up
+        for (int i = 0; i < ITERATIONS; i++) {
+            function.apply(document);
+        }
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            function.apply(document);
+        }
+        return (threadBean.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+    }
+
+    /**
+     * The former implementation of cleanTextdata.
+     */
+    private static String legacyCleanTextdata(String text) {
+        String result = text;
+        result = stripChars(result, c -> (c > '\u001F' && c != '\u007F') || (c == '\n') || (c == '\t'));
+        result = result.replaceAll("[{}\"]", " ");
+        return result;
+    }
+
+    private static String stripChars(String s, IntPredicate include) {
+        return s.codePoints().filter(include::test)
+                .collect(StringBuilder::new, StringBuilder::appendCodePoint, StringBuilder::append).toString();
+    }
+}
@@ -0,0 +1,91 @@
+package org.imixs.ml.core.xml;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import jakarta.json.Json;
+import jakarta.json.JsonArray;
+import jakarta.json.JsonObject;
+import jakarta.json.JsonReader;
+
+import org.imixs.ml.core.TrainingDataStreamingOutput;
+import org.imixs.ml.xml.XMLTrainingCategory;
+import org.imixs.ml.xml.XMLTrainingData;
+import org.imixs.ml.xml.XMLTrainingEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test the json structure written by the TrainingDataStreamingOutput
+ * 
+ * @author rsoika
+ */
+public class TestTrainingDataStreamingOutput {
+
+    /**
+     * Writes a batch of two training data objects and verifies the json array.
+     */
+    @Test
+    public void testWriteBatch() throws IOException {
+        List<XMLTrainingData> batch = new ArrayList<XMLTrainingData>();
+
+        XMLTrainingData first = new XMLTrainingData();
+        first.setText("Wayne Rooney is a \"famous\" football player!");
+        XMLTrainingEntity entity = new XMLTrainingEntity();
+        entity.setLabel("person");
+        entity.setStart(0);
+        entity.setStop(12);
+        entity.setValue("Wayne Rooney");
+        first.addTrainingEntity(entity);
+        XMLTrainingCategory category = new XMLTrainingCategory();
+        category.setLabel("sports");
+        category.setEnclosed(true);
+        first.getCategories().add(category);
+        batch.add(first);
+
+        XMLTrainingData second = new XMLTrainingData();
+        second.setText("Some text");
+        batch.add(second);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TrainingDataStreamingOutput(batch).write(out);
+        String json = new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        JsonArray result;
+        try (JsonReader reader = Json.createReader(new StringReader(json))) {
+            result = reader.readArray();
+        }
+        Assert.assertEquals(2, result.size());
+
+        JsonObject obj = result.getJsonObject(0);
+        Assert.assertEquals("Wayne Rooney is a \"famous\" football player!", obj.getString("text"));
+        JsonObject jsonEntity = obj.getJsonArray("entities").getJsonObject(0);
+        Assert.assertEquals("person", jsonEntity.getString("label"));
+        Assert.assertEquals(0, jsonEntity.getInt("start"));
+        Assert.assertEquals(12, jsonEntity.getInt("stop"));
+        // the value is transient
+        Assert.assertFalse(jsonEntity.containsKey("value"));
+        JsonObject jsonCategory = obj.getJsonArray("categories").getJsonObject(0);
+        Assert.assertEquals("sports", jsonCategory.getString("label"));
+        Assert.assertTrue(jsonCategory.getBoolean("enclosed"));
+
+        obj = result.getJsonObject(1);
+        Assert.assertEquals("Some text", obj.getString("text"));
+        Assert.assertEquals(0, obj.getJsonArray("entities").size());
+        Assert.assertEquals(0, obj.getJsonArray("categories").size());
+    }
+
+    /**
+     * An empty batch is written as an empty json array.
+     */
+    @Test
+    public void testWriteEmptyBatch() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new TrainingDataStreamingOutput(new ArrayList<XMLTrainingData>()).write(out);
+        Assert.assertEquals("[]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
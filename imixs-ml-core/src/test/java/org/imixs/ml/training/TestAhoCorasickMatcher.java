@@ -0,0 +1,97 @@
+package org.imixs.ml.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the AhoCorasickMatcher
+ *
+ * @author rsoika
+ */
+public class TestAhoCorasickMatcher {
+
+    /**
+     * Test overlapping variants of a date.
+     */
+    @Test
+    public void testOverlappingPatterns() {
+        List<String> patterns = Arrays.asList("02.06.2020", "02.06.20", "2020");
+        List<String> matches = match("Invoice Date: 02.06.2020", patterns);
+
+        Assert.assertEquals(3, matches.size());
+        Assert.assertTrue(matches.contains("0:14:24"));
+        Assert.assertTrue(matches.contains("1:14:22"));
+        Assert.assertTrue(matches.contains("2:20:24"));
+    }
+
+    /**
+     * A pattern is not matched again within its own previous match.
+     */
+    @Test
+    public void testSelfOverlapping() {
+        List<String> matches = match("aaaaa", Arrays.asList("aa"));
+        Assert.assertEquals(Arrays.asList("0:0:2", "0:2:4"), matches);
+    }
+
+    /**
+     * Empty patterns are ignored.
+     */
+    @Test
+    public void testEmptyPattern() {
+        List<String> matches = match("some text", Arrays.asList("", "text"));
+        Assert.assertEquals(Arrays.asList("1:5:9"), matches);
+    }
+
+    /**
+     * Compares the matcher with an indexOf loop for random texts and patterns.
+     */
+    @Test
+    public void testCompareWithIndexOf() {
+        Random random = new Random(42);
+        for (int run = 0; run < 200; run++) {
+            String text = randomString(random, 200);
+            List<String> patterns = new ArrayList<String>();
+            for (int i = 0; i < 10; i++) {
+                String pattern = randomString(random, 1 + random.nextInt(4));
+                if (!patterns.contains(pattern)) {
+                    patterns.add(pattern);
+                }
+            }
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < patterns.size(); i++) {
+                String pattern = patterns.get(i);
+                int indexPos = 0;
+                int start;
+                while ((start = text.indexOf(pattern, indexPos)) > -1) {
+                    expected.add(i + ":" + start + ":" + (start + pattern.length()));
+                    indexPos = start + pattern.length();
+                }
+            }
+            List<String> result = match(text, patterns);
+            Collections.sort(expected);
+            Collections.sort(result);
+            Assert.assertEquals(expected, result);
+        }
+    }
+
+    private List<String> match(String text, List<String> patterns) {
+        List<String> result = new ArrayList<String>();
+        new AhoCorasickMatcher(patterns).match(text,
+                (pattern, start, stop) -> result.add(pattern + ":" + start + ":" + stop));
+        return result;
+    }
+
+    private String randomString(Random random, int length) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(3)));
+        }
+        return sb.toString();
+    }
+}
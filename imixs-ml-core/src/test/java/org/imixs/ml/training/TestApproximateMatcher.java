@@ -0,0 +1,63 @@
+package org.imixs.ml.training;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the ApproximateMatcher
+ *
+ * @author rsoika
+ */
+public class TestApproximateMatcher {
+
+    /**
+     * Test an IBAN with OCR errors.
+     */
+    @Test
+    public void testSubstitution() {
+        String text = "Bank: DE89 37O4 0044 O532 0130 00 BIC: COBADEFFXXX";
+        List<String> matches = match(text, Arrays.asList("DE89 3704 0044 0532 0130 00"), 2);
+        Assert.assertEquals(Arrays.asList("0:6:33"), matches);
+        Assert.assertTrue(match(text, Arrays.asList("DE89 3704 0044 0532 0130 00"), 1).isEmpty());
+    }
+
+    /**
+     * Test a missing and an additional character.
+     */
+    @Test
+    public void testInsertionAndDeletion() {
+        // missing dot
+        Assert.assertEquals(Arrays.asList("0:6:15"), match("Date: 02.062020 Total", Arrays.asList("02.06.2020"), 1));
+        // additional space
+        Assert.assertEquals(Arrays.asList("0:6:17"), match("Date: 02.06. 2020 Total", Arrays.asList("02.06.2020"), 1));
+    }
+
+    /**
+     * Exact occurrences are found with 0 errors and are not overlapping.
+     */
+    @Test
+    public void testExactOccurrences() {
+        List<String> matches = match("invoice 4711-0815 and invoice 4711-0815", Arrays.asList("4711-0815"), 2);
+        Assert.assertEquals(Arrays.asList("0:8:17", "0:30:39"), matches);
+    }
+
+    /**
+     * Short patterns allow only one error per four characters.
+     */
+    @Test
+    public void testShortPattern() {
+        Assert.assertTrue(match("the total is 1.00 EUR", Arrays.asList("1,00"), 2).isEmpty());
+        Assert.assertEquals(Arrays.asList("0:13:18"), match("the total is 10.00 EUR", Arrays.asList("10,00"), 2));
+    }
+
+    private List<String> match(String text, List<String> patterns, int maxErrors) {
+        List<String> result = new ArrayList<String>();
+        new ApproximateMatcher(patterns, maxErrors).match(text,
+                (pattern, start, stop) -> result.add(pattern + ":" + start + ":" + stop));
+        return result;
+    }
+}
@@ -0,0 +1,94 @@
+package org.imixs.ml.training;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test class for the EntityVariantCache
+ * 
+ * @author rsoika
+ */
+public class TestEntityVariantCache {
+
+    private List<Locale> locals = null;
+
+    @Before
+    public void setup() {
+        locals = new ArrayList<Locale>();
+        locals.add(Locale.UK);
+        locals.add(Locale.GERMANY);
+    }
+
+    /**
+     * Test put and get of variants by value, value type and locales.
+     */
+    @Test
+    public void testGetPut() {
+        EntityVariantCache cache = new EntityVariantCache(10);
+        Set<String> variants = new HashSet<String>(Arrays.asList("1500.00", "1.500,00"));
+        cache.put(new BigDecimal("1500"), locals, variants);
+
+        Assert.assertEquals(variants, cache.get(new BigDecimal("1500"), locals));
+        // different locales
+        Assert.assertNull(cache.get(new BigDecimal("1500"), Arrays.asList(Locale.UK)));
+        // different type
+        Assert.assertNull(cache.get("1500", locals));
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    /**
+     * A cached date must not be changed by a later modification of the value.
+     */
+    @Test
+    public void testMutableValue() {
+        EntityVariantCache cache = new EntityVariantCache(10);
+        Calendar cal = Calendar.getInstance();
+        cal.set(2020, 5, 2);
+        Date date = cal.getTime();
+        cache.put(date, locals, new HashSet<String>(Arrays.asList("02.06.2020")));
+
+        date.setTime(date.getTime() + 86400000L);
+        Assert.assertNull(cache.get(date, locals));
+        Assert.assertNotNull(cache.get(cal.getTime(), locals));
+    }
+
+    /**
+     * Test that the least recently used entry is removed.
+     */
+    @Test
+    public void testMaxSize() {
+        EntityVariantCache cache = new EntityVariantCache(2);
+        cache.put("a", locals, new HashSet<String>(Arrays.asList("a")));
+        cache.put("b", locals, new HashSet<String>(Arrays.asList("b")));
+        // touch a
+        Assert.assertNotNull(cache.get("a", locals));
+        cache.put("c", locals, new HashSet<String>(Arrays.asList("c")));
+
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertNotNull(cache.get("a", locals));
+        Assert.assertNull(cache.get("b", locals));
+        Assert.assertNotNull(cache.get("c", locals));
+    }
+
+    /**
+     * A cache size of 0 disables the cache.
+     */
+    @Test
+    public void testDisabled() {
+        EntityVariantCache cache = new EntityVariantCache(0);
+        cache.put("a", locals, new HashSet<String>(Arrays.asList("a")));
+        Assert.assertNull(cache.get("a", locals));
+    }
+}
@@ -6,6 +6,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 import org.imixs.ml.adapters.DateAdapter;
@@ -261,4 +263,148 @@ public class TestTrainingDataBuilder {
         }
     }
 
+    /**
+     * Test partial overlapping entities of different labels. We expect that the
+     * longer entity wins, contained entities and duplicates are removed and the
+     * result is ordered by the start position.
+     * 
+     * <pre>
+     * text = "Total 1.200,00 EUR due 02.06.2020"
+     * </pre>
+     */
+    @Test
+    public void testcleanPartialOverlappingEntities() {
+        TrainingDataBuilder builder = new TrainingDataBuilder(null, null, null, locals);
+
+        List<XMLTrainingEntity> trainingEntites = new ArrayList<XMLTrainingEntity>();
+        trainingEntites.add(createEntity("date", 23, 33));
+        trainingEntites.add(createEntity("amount", 6, 14));
+        trainingEntites.add(createEntity("amount", 6, 18));
+        trainingEntites.add(createEntity("number", 12, 14));
+        trainingEntites.add(createEntity("currency", 15, 18));
+        trainingEntites.add(createEntity("date", 23, 33));
+        trainingEntites.add(createEntity("year", 29, 33));
+        // partial overlap - the longer entity wins
+        trainingEntites.add(createEntity("due", 19, 26));
+
+        builder.cleanOvelappingEntities(trainingEntites);
+
+        Assert.assertEquals(2, trainingEntites.size());
+        Assert.assertEquals("amount", trainingEntites.get(0).getLabel());
+        Assert.assertEquals(6, trainingEntites.get(0).getStart());
+        Assert.assertEquals(18, trainingEntites.get(0).getStop());
+        Assert.assertEquals("date", trainingEntites.get(1).getLabel());
+        Assert.assertEquals(23, trainingEntites.get(1).getStart());
+        Assert.assertEquals(33, trainingEntites.get(1).getStop());
+    }
+
+    /**
+     * Test the parallel mode. We expect the same entities in the same order and
+     * the same quality as in the sequential mode.
+     */
+    @Test
+    public void testBuilderParallel() {
+        ItemCollection doc = new ItemCollection();
+        doc.replaceItemValue("org", "Apple");
+        doc.replaceItemValue("gpe", "U.K.");
+        doc.replaceItemValue("money", "$1 billion");
+        doc.replaceItemValue("product", "iPhone");
+        doc.replaceItemValue("_city", "London");
+
+        List<MLEntity> mlEntities = new ArrayList<MLEntity>();
+        mlEntities.add(new MLEntity("money", null, null, 0, true));
+        mlEntities.add(new MLEntity("org", null, null, 0, true));
+        mlEntities.add(new MLEntity("product", null, null, 0, false));
+        mlEntities.add(new MLEntity("_city|city", null, null, 0, false));
+        mlEntities.add(new MLEntity("date", null, null, 0, false));
+        mlEntities.add(new MLEntity("gpe", null, null, 0, true));
+
+        String text = "Apple is looking at buying U.K. startup in London for $1 billion";
+
+        XMLTrainingData sequential = new TrainingDataBuilder(text, doc, mlEntities, locals).build();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            XMLTrainingData parallel = new TrainingDataBuilder(text, doc, mlEntities, locals).setExecutor(executor)
+                    .build();
+            Assert.assertEquals(sequential.getQuality(), parallel.getQuality());
+            Assert.assertEquals(XMLTrainingData.TRAININGDATA_QUALITY_LOW, parallel.getQuality());
+            Assert.assertEquals(sequential.getEntities(), parallel.getEntities());
+            Assert.assertEquals(4, parallel.getEntities().size());
+            Assert.assertEquals("city", parallel.getEntities().get(2).getLabel());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Test the mapping of an item name with the | character. The mapped item is
+     * read from the workitem, but the workitem must not be modified.
+     */
+    @Test
+    public void testItemMapping() {
+        ItemCollection doc = new ItemCollection();
+        doc.replaceItemValue("_capacity", "Apple");
+        doc.replaceItemValue("org", "Microsoft");
+
+        List<MLEntity> mlEntities = new ArrayList<MLEntity>();
+        mlEntities.add(new MLEntity("_capacity|org", null, null, 0, true));
+        mlEntities.add(new MLEntity("org|company", null, null, 0, true));
+
+        String text = "Apple is looking at buying U.K. startup for $1 billion";
+
+        XMLTrainingData trainingData = new TrainingDataBuilder(text, doc, mlEntities, locals).build();
+
+        List<XMLTrainingEntity> trainingEntities = trainingData.getEntities();
+        // the second mapping reads the value of the first mapping, otherwise the
+        // required entity 'company' would not be found
+        Assert.assertEquals(XMLTrainingData.TRAININGDATA_QUALITY_GOOD, trainingData.getQuality());
+        // both labels match the same span, the first one is kept
+        Assert.assertEquals(1, trainingEntities.size());
+        Assert.assertEquals("org", trainingEntities.get(0).getLabel());
+        Assert.assertEquals(0, trainingEntities.get(0).getStart());
+        Assert.assertEquals(5, trainingEntities.get(0).getStop());
+
+        // the workitem is unchanged
+        Assert.assertEquals("Microsoft", doc.getItemValueString("org"));
+        Assert.assertFalse(doc.hasItem("company"));
+    }
+
+    /**
+     * Test the search of an IBAN with OCR errors. The errors are only allowed for
+     * the configured item type.
+     */
+    @Test
+    public void testBuilderMaxErrors() {
+        ItemCollection doc = new ItemCollection();
+        doc.replaceItemValue("iban", "DE89 3704 0044 0532 0130 00");
+
+        List<MLEntity> mlEntities = new ArrayList<MLEntity>();
+        mlEntities.add(new MLEntity("iban", "iban", null, 0, true));
+
+        String text = "Bank: DE89 37O4 0044 O532 0130 00 BIC: COBADEFFXXX";
+
+        XMLTrainingData trainingData = new TrainingDataBuilder(text, doc, mlEntities, locals).build();
+        Assert.assertEquals(XMLTrainingData.TRAININGDATA_QUALITY_BAD, trainingData.getQuality());
+
+        trainingData = new TrainingDataBuilder(text, doc, mlEntities, locals)
+                .setMaxErrors(TrainingDataBuilder.parseMaxErrors("text=1, iban=2")).build();
+        Assert.assertEquals(XMLTrainingData.TRAININGDATA_QUALITY_GOOD, trainingData.getQuality());
+        Assert.assertEquals(1, trainingData.getEntities().size());
+        Assert.assertEquals("DE89 37O4 0044 O532 0130 00", trainingData.getEntities().get(0).getValue());
+        Assert.assertEquals(6, trainingData.getEntities().get(0).getStart());
+        Assert.assertEquals(33, trainingData.getEntities().get(0).getStop());
+
+        trainingData = new TrainingDataBuilder(text, doc, mlEntities, locals)
+                .setMaxErrors(TrainingDataBuilder.parseMaxErrors("text=2")).build();
+        Assert.assertEquals(XMLTrainingData.TRAININGDATA_QUALITY_BAD, trainingData.getQuality());
+    }
+
+    private XMLTrainingEntity createEntity(String label, int start, int stop) {
+        XMLTrainingEntity entity = new XMLTrainingEntity();
+        entity.setLabel(label);
+        entity.setStart(start);
+        entity.setStop(stop);
+        return entity;
+    }
+
 }
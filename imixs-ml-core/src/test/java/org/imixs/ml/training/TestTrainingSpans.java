@@ -0,0 +1,60 @@
+package org.imixs.ml.training;
+
+import java.util.List;
+
+import org.imixs.ml.xml.XMLTrainingEntity;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Test class for the TrainingSpans
+ *
+ * @author rsoika
+ */
+public class TestTrainingSpans {
+
+    /**
+     * Test the removal of overlapping spans of different labels. Of equal spans
+     * the first one is kept.
+     */
+    @Test
+    public void testRemoveOverlapping() {
+        TrainingSpans spans = new TrainingSpans(new String[] { "org", "company", "date" });
+        spans.add(1, 0, 5);
+        spans.add(2, 20, 30);
+        spans.add(0, 0, 5);
+        spans.add(2, 22, 30);
+        spans.add(0, 28, 40);
+
+        spans.removeOverlapping();
+        Assert.assertEquals(2, spans.size());
+        Assert.assertEquals("company", spans.getLabel(0));
+        Assert.assertEquals(0, spans.getStart(0));
+        Assert.assertEquals(5, spans.getStop(0));
+        // the partial overlapping span is longer
+        Assert.assertEquals("org", spans.getLabel(1));
+        Assert.assertEquals(28, spans.getStart(1));
+        Assert.assertEquals(40, spans.getStop(1));
+    }
+
+    /**
+     * Test the creation of the entities from many spans. The value is taken from
+     * the text.
+     */
+    @Test
+    public void testToEntities() {
+        String text = "";
+        TrainingSpans spans = new TrainingSpans(new String[] { "amount" });
+        for (int i = 0; i < 500; i++) {
+            spans.add(0, text.length(), text.length() + 6);
+            text = text + "100,00 EUR\n";
+        }
+
+        spans.removeOverlapping();
+        List<XMLTrainingEntity> entities = spans.toEntities(text);
+        Assert.assertEquals(500, entities.size());
+        Assert.assertEquals("amount", entities.get(499).getLabel());
+        Assert.assertEquals(499 * 11, entities.get(499).getStart());
+        Assert.assertEquals("100,00", entities.get(499).getValue());
+    }
+}
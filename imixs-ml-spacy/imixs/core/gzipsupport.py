@@ -0,0 +1,43 @@
+"""
+The gzipsupport module provides a custom request and route class to accept gzip
+compressed request bodies. The Imixs-ML client sends large training and analyse
+data objects with the header 'Content-Encoding: gzip'.
+
+Usage:
+
+    app.router.route_class = GzipRoute
+
+Compressed responses are provided by the GZipMiddleware of FastAPI.
+
+@author: ralph.soika@imixs.com 
+@version:  1.0 
+""" 
+
+import gzip
+from typing import Callable
+
+from fastapi import Request, Response
+from fastapi.routing import APIRoute
+
+
+# The GzipRequest decompresses the body if the request is gzip encoded
+class GzipRequest(Request):
+    async def body(self) -> bytes:
+        if not hasattr(self, "_body"):
+            body = await super().body()
+            if "gzip" in self.headers.getlist("Content-Encoding"):
+                body = gzip.decompress(body)
+            self._body = body
+        return self._body
+
+
+# The GzipRoute replaces the request of each route by a GzipRequest
+class GzipRoute(APIRoute):
+    def get_route_handler(self) -> Callable:
+        original_route_handler = super().get_route_handler()
+
+        async def custom_route_handler(request: Request) -> Response:
+            request = GzipRequest(request.scope, request.receive)
+            return await original_route_handler(request)
+
+        return custom_route_handler
@@ -6,7 +6,9 @@ from logging.handlers import TimedRotatingFileHandler
 
 from builtins import str
 from fastapi import FastAPI, HTTPException
+from fastapi.middleware.gzip import GZipMiddleware
 from imixs.core import datamodel, modelservice
+from imixs.core.gzipsupport import GzipRoute
 from typing import List
 
 # Setup Logging
@@ -23,6 +25,10 @@ logging.basicConfig(
 logger = logging.getLogger('imixs-ml')
 print = logger.info
 app = FastAPI()
+# accept gzip compressed requests and compress responses above GZIP_MINIMUM_SIZE bytes
+gzipminimumsize=int(os.getenv('GZIP_MINIMUM_SIZE', '1000'))
+app.router.route_class = GzipRoute
+app.add_middleware(GZipMiddleware, minimum_size=gzipminimumsize)
 
 modelpath=os.getenv('MODEL_PATH', 'models/')
 if (modelpath.endswith('/') == False) :
@@ -36,6 +42,7 @@ print("/___/_/_/_/_//_\_\/___/  V1.6")
 print("")                                           
 print("ENGINE          : https://spacy.io")                                           
 print("MODEL_PATH      : " + modelpath)
+print("GZIP_MIN_SIZE   : " + str(gzipminimumsize))
 print("LOG FILE        : ./imixs.log")
 print("")                                           
 print("")                                           
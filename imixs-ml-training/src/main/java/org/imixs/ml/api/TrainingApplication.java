@@ -31,6 +31,7 @@ public class TrainingApplication extends Application {
     public static final String ITEM_ML_TRAINING_ITERATIONS = "ml.training.iterations";
     public static final String ITEM_ML_TRAINING_DROP_OUT_RATE = "ml.training.dropoutrate";
     public static final String ITEM_ML_TRAINING_OCR = "ml.training.ocr";
+    public static final String ITEM_ML_TRAINING_BATCHSIZE = "ml.training.batchsize";
     
     public static final String ITEM_ML_TRAINING_FILEPATTERN="ml.training.filepattern";
     public static final String ITME_ML_OPTIONS = "ml.options";
@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Logger;
 
 import jakarta.inject.Inject;
@@ -197,45 +198,80 @@ public class TrainingResource {
             iterraionUniqueIDs.remove(0);
         }
 
+        // the batch size defines how many documents are send in one request
+        int batchSize = config.getItemValueInteger(TrainingApplication.ITEM_ML_TRAINING_BATCHSIZE);
+        if (batchSize < 1) {
+            batchSize = 1;
+        }
+        logger.info("..... batchsize=" + batchSize);
+
         // now we start the training with the shuffled reduced traing set....
+        // The next batch is build while the previous batch is trained by the ML
+        // service. The batches are send one after another so that the model is never
+        // updated concurrently.
+        List<CompletionStage<List<MLTrainingResult>>> trainingStages = new ArrayList<CompletionStage<List<MLTrainingResult>>>();
+        CompletionStage<List<MLTrainingResult>> pendingStage = null;
+        for (int i = 0; i < iterraionUniqueIDs.size(); i += batchSize) {
+            List<ItemCollection> batch = new ArrayList<ItemCollection>();
+            for (String uniqueid : iterraionUniqueIDs.subList(i, Math.min(i + batchSize, iterraionUniqueIDs.size()))) {
+                logger.fine("...... train " + uniqueid + "...");
+                batch.add(trainingDataSet.get(uniqueid));
+            }
+            countTotal = countTotal + batch.size();
+            List<XMLTrainingData> trainingDataList = trainingService.buildTrainingDataBatch(config, batch,
+                    worklowClient);
+            // wait for the previous batch
+            if (pendingStage != null) {
+                pendingStage.toCompletableFuture().join();
+            }
+            // a failed request is counted as quality level BAD
+            pendingStage = trainingService.trainTrainingDataBatchAsync(config, trainingDataList).exceptionally(e -> {
+                logger.severe("failed to train batch: " + e.getMessage());
+                return Collections.nCopies(trainingDataList.size(), null);
+            });
+            trainingStages.add(pendingStage);
+        }
 
-        int currentCount = 0;
-        for (String uniqueid : iterraionUniqueIDs) {
-            ItemCollection doc = trainingDataSet.get(uniqueid);
-            currentCount++;
-            countTotal++;
-            logger.fine("...... train " + uniqueid + "...");
-            MLTrainingResult trainingResult = trainingService.trainWorkitemData(config, doc, worklowClient);
+        // compute the statistic
+        int countBatches = 0;
+        for (CompletionStage<List<MLTrainingResult>> trainingStage : trainingStages) {
+            List<MLTrainingResult> trainingResults = trainingStage.toCompletableFuture().join();
 
-            if (trainingResult != null) {
-                // compute quality statistic
-                switch (trainingResult.getQualityLevel()) {
-                case XMLTrainingData.TRAININGDATA_QUALITY_GOOD:
-                    countQualityGood++;
-                    break;
-                case XMLTrainingData.TRAININGDATA_QUALITY_LOW:
-                    countQualityLow++;
-                    break;
-                default:
+            String resultData = null;
+            for (MLTrainingResult trainingResult : trainingResults) {
+                if (trainingResult != null) {
+                    // compute quality statistic
+                    switch (trainingResult.getQualityLevel()) {
+                    case XMLTrainingData.TRAININGDATA_QUALITY_GOOD:
+                        countQualityGood++;
+                        break;
+                    case XMLTrainingData.TRAININGDATA_QUALITY_LOW:
+                        countQualityLow++;
+                        break;
+                    default:
+                        countQualityBad++;
+                    }
+                    if (trainingResult.getData() != null) {
+                        resultData = trainingResult.getData();
+                    }
+                } else {
                     countQualityBad++;
                 }
+            }
 
-                // extract ner factor
-                String resultData = trainingResult.getData();
-                if (resultData != null && !resultData.isEmpty()) {
-                    // parse currentNerFactor....
-                    try {
-                        String nerString = JSONParser.getKey("ner", resultData);
-                        double newNerFactor = Double.parseDouble(nerString);
-                        allNerFactors = allNerFactors + newNerFactor;
-                        nerFactor = allNerFactors / currentCount;
-                    } catch (Exception e) {
-                        logger.severe("failed to parse training result (ner)");
-                    }
+            // extract ner factor - the result data is shared by all documents of a batch
+            if (resultData != null && !resultData.isEmpty()) {
+                // parse currentNerFactor....
+                try {
+                    String nerString = JSONParser.getKey("ner", resultData);
+                    double newNerFactor = Double.parseDouble(nerString);
+                    countBatches++;
+                    allNerFactors = allNerFactors + newNerFactor;
+                    nerFactor = allNerFactors / countBatches;
+                    logger.info("...... batch " + countBatches + " NER = " + newNerFactor);
+                } catch (Exception e) {
+                    logger.severe("failed to parse training result (ner)");
                 }
-
-            } else {
-                countQualityBad++;
             }
 
         }
@@ -4,7 +4,9 @@ import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Logger;
 
 import jakarta.inject.Inject;
@@ -115,10 +117,21 @@ public class ValidateResource {
             List<ItemCollection> documents = worklowClient.getCustomResource(queryURL);
             logger.info("...... " + documents.size() + " documents found");
 
-            // now iterate over all documents and start the training algorithm
-            int currentCount = 0;
+            // now iterate over all documents and start the validation. The validation
+            // requests are send asynchronous, so the next documents can be fetched while
+            // the ML service validates the data.
+            List<CompletionStage<MLTrainingResult>> validationStages = new ArrayList<CompletionStage<MLTrainingResult>>();
             for (ItemCollection doc : documents) {
-                MLTrainingResult trainingResult = trainingService.validateWorkitemData(config, doc, worklowClient);
+                validationStages.add(trainingService.validateWorkitemDataAsync(config, doc, worklowClient)
+                        .exceptionally(e -> {
+                            logger.severe("failed to validate document: " + e.getMessage());
+                            return null;
+                        }));
+            }
+
+            int currentCount = 0;
+            for (CompletionStage<MLTrainingResult> validationStage : validationStages) {
+                MLTrainingResult trainingResult = validationStage.toCompletableFuture().join();
                 currentCount++;
                 countTotal++;
                 if (trainingResult != null) {
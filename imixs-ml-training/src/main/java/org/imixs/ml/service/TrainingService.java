@@ -28,6 +28,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
@@ -39,15 +43,18 @@ import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
 import jakarta.xml.bind.Marshaller;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.imixs.melman.RestAPIException;
 import org.imixs.melman.WorkflowClient;
+import org.imixs.ml.adapters.EntityAdapterRegistry;
 import org.imixs.ml.api.TrainingApplication;
-import org.imixs.ml.core.MLClient;
+import org.imixs.ml.core.MLClientRegistry;
 import org.imixs.ml.core.MLConfig;
 import org.imixs.ml.core.MLContentBuilder;
 import org.imixs.ml.core.MLEntity;
 import org.imixs.ml.core.MLTrainingResult;
 import org.imixs.ml.events.EntityObjectEvent;
+import org.imixs.ml.training.EntityVariantCache;
 import org.imixs.ml.training.TrainingDataBuilder;
 import org.imixs.ml.xml.XMLAnalyseResult;
 import org.imixs.ml.xml.XMLTrainingData;
@@ -83,6 +90,20 @@ public class TrainingService {
     @Inject
     protected Event<EntityObjectEvent> entityObjectEvents;
 
+    @Inject
+    protected EntityVariantCache entityVariantCache;
+
+    @Inject
+    protected EntityAdapterRegistry entityAdapterRegistry;
+
+    // errors per item type to find entity values in an OCR text
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_TRAINING_MAXERRORS)
+    Optional<String> trainingMaxErrors;
+
+    @Inject
+    protected MLClientRegistry mlClientRegistry;
+
     /**
      * This method is used to extract the text contained in a snapshot document and
      * search for 'known' entities within the text. If a valuable training data set
@@ -95,19 +116,155 @@ public class TrainingService {
      * @param workflowClient - a rest client instance
      * @return - quality result
      */
-    @SuppressWarnings("unchecked")
     public MLTrainingResult trainWorkitemData(ItemCollection config, ItemCollection workitem,
             WorkflowClient workflowClient) {
         boolean debug = logger.isLoggable(Level.FINE);
-        int qualityResult = -1;
         MLTrainingResult trainingResult = null;
-        Pattern mlFilenamePattern = null;
 
         logger.info("=======================START ======================================");
         logger.info("...create new training data for: " + workitem.getUniqueID());
 
         String model = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_MODEL);
         String mlOptions = config.getItemValueString(TrainingApplication.ITME_ML_OPTIONS);
+
+        XMLTrainingData trainingData = buildTrainingData(config, workitem, workflowClient);
+        if (trainingData != null) {
+            int qualityResult = trainingData.getQuality();
+            // trainingData if quality level is sufficient
+            if (qualityResult != XMLTrainingData.TRAININGDATA_QUALITY_BAD) {
+                // log the XMLTrainingData object....
+                if (debug) {
+                    printXML(trainingData);
+                }
+                String serviceEndpoint = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_ENDPOINT);
+                String resultData = mlClientRegistry.getClient(serviceEndpoint).postTrainingData(trainingData,
+                        model, mlOptions);
+                trainingResult = new MLTrainingResult(qualityResult, resultData);
+
+            } else {
+                trainingResult = new MLTrainingResult(qualityResult, null);
+            }
+        }
+        logger.info("=======================FINISHED====================================");
+
+        return trainingResult;
+
+    }
+
+    /**
+     * This method sends a list of training data objects, build by the method
+     * buildTrainingDataBatch, asynchronous in one request to the Imixs-ML service.
+     * The calling thread is not blocked, so the next batch can be build while the
+     * model is trained.
+     * <p>
+     * The returned CompletionStage is completed with a MLTrainingResult for each
+     * training data object in the same order.
+     * 
+     * @param config           - a config object providing the training
+     *                         configuration
+     * @param trainingDataList - list of training data objects
+     * @return - CompletionStage providing the list of quality results
+     */
+    public CompletionStage<List<MLTrainingResult>> trainTrainingDataBatchAsync(ItemCollection config,
+            List<XMLTrainingData> trainingDataList) {
+        List<XMLTrainingData> batch = selectTrainingDataBatch(trainingDataList);
+        if (batch.size() == 0) {
+            return CompletableFuture.completedFuture(buildTrainingResults(trainingDataList, null));
+        }
+        logger.info("...post training batch with " + batch.size() + " documents async...");
+        String model = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_MODEL);
+        String mlOptions = config.getItemValueString(TrainingApplication.ITME_ML_OPTIONS);
+        String serviceEndpoint = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_ENDPOINT);
+        return mlClientRegistry.getClient(serviceEndpoint).postTrainingDataBatchAsync(batch, model, mlOptions)
+                .thenApply(resultData -> buildTrainingResults(trainingDataList, resultData));
+    }
+
+    /**
+     * This method builds the training data for a list of workitems. The list
+     * contains one XMLTrainingData object for each workitem in the same order. The
+     * element is null if the training data could not be build.
+     * 
+     * @param config         - a config object providing the training configuration
+     * @param workitems      - list of workitems providing the data
+     * @param workflowClient - a rest client instance
+     * @return - list of training data objects
+     */
+    public List<XMLTrainingData> buildTrainingDataBatch(ItemCollection config, List<ItemCollection> workitems,
+            WorkflowClient workflowClient) {
+        List<XMLTrainingData> trainingDataList = new ArrayList<XMLTrainingData>();
+        logger.info("=======================START ======================================");
+        for (ItemCollection workitem : workitems) {
+            logger.info("...create new training data for: " + workitem.getUniqueID());
+            trainingDataList.add(buildTrainingData(config, workitem, workflowClient));
+        }
+        logger.info("=======================FINISHED====================================");
+        return trainingDataList;
+    }
+
+    /**
+     * Returns all training data objects with a sufficient quality level.
+     * 
+     * @param trainingDataList
+     * @return batch to be send
+     */
+    private List<XMLTrainingData> selectTrainingDataBatch(List<XMLTrainingData> trainingDataList) {
+        boolean debug = logger.isLoggable(Level.FINE);
+        List<XMLTrainingData> batch = new ArrayList<XMLTrainingData>();
+        for (XMLTrainingData trainingData : trainingDataList) {
+            if (trainingData != null && trainingData.getQuality() != XMLTrainingData.TRAININGDATA_QUALITY_BAD) {
+                // log the XMLTrainingData object....
+                if (debug) {
+                    printXML(trainingData);
+                }
+                batch.add(trainingData);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Builds a MLTrainingResult for each training data object. Only training data
+     * objects which were part of the batch get the result data.
+     * 
+     * @param trainingDataList
+     * @param resultData       - response data of the batch request
+     * @return list of quality results
+     */
+    private List<MLTrainingResult> buildTrainingResults(List<XMLTrainingData> trainingDataList, String resultData) {
+        List<MLTrainingResult> result = new ArrayList<MLTrainingResult>();
+        for (XMLTrainingData trainingData : trainingDataList) {
+            if (trainingData == null) {
+                result.add(null);
+            } else if (trainingData.getQuality() != XMLTrainingData.TRAININGDATA_QUALITY_BAD) {
+                result.add(new MLTrainingResult(trainingData.getQuality(), resultData));
+            } else {
+                result.add(new MLTrainingResult(trainingData.getQuality(), null));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * This helper method extracts the text contained in a snapshot document and
+     * builds a new XMLTrainingData object. The quality level of the training data
+     * is set to TRAININGDATA_QUALITY_BAD if the quality does not match the quality
+     * level required by the training configuration.
+     * <p>
+     * If no text was found, the method returns an empty XMLTrainingData object with
+     * the quality level TRAININGDATA_QUALITY_BAD. The method returns null if the
+     * document could not be parsed.
+     * 
+     * @param config         - a config object providing the training configuration
+     * @param workitem       - a workitem providing the data
+     * @param workflowClient - a rest client instance
+     * @return - new XMLTrainingData object
+     */
+    @SuppressWarnings("unchecked")
+    private XMLTrainingData buildTrainingData(ItemCollection config, ItemCollection workitem,
+            WorkflowClient workflowClient) {
+        boolean debug = logger.isLoggable(Level.FINE);
+        Pattern mlFilenamePattern = null;
+
         String mlOCR = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_OCR);
         List<String> trainingItemNames = config.getItemValue(TrainingApplication.ITEM_ENTITIES);
         List<String> tikaOptions = config.getItemValue(TrainingApplication.ITEM_TIKA_OPTIONS);
@@ -167,8 +324,9 @@ public class TrainingService {
             if (ocrText == null || ocrText.isEmpty()) {
                 logger.severe("...document '" + workitem.getUniqueID()
                 + "' No text found!");
-                logger.info("=======================FINISHED====================================");
-                return new MLTrainingResult(XMLTrainingData.TRAININGDATA_QUALITY_BAD, null);
+                XMLTrainingData emptyData = new XMLTrainingData();
+                emptyData.setQuality(XMLTrainingData.TRAININGDATA_QUALITY_BAD);
+                return emptyData;
             }
 
             logger.fine("extracted text content to be analysed=");
@@ -176,15 +334,6 @@ public class TrainingService {
             
             XMLTrainingData trainingData= generateTraingDataSet( ocrText, workitem, trainingItemNames, locals );
 
-            // compute stats rate for found entities
-//            List<String> entitysFound = new ArrayList<String>();
-//            for (XMLTrainingEntity trainingEntity : trainingData.getEntities()) {
-//                if (!entitysFound.contains(trainingEntity.getLabel())) {
-//                    entitysFound.add(trainingEntity.getLabel());
-//                }
-//            }
-
-            qualityResult = trainingData.getQuality();
             // we only send the training data in case of quality level is sufficient
             if (XMLTrainingData.TRAININGDATA_QUALITY_BAD == trainingData.getQuality()) {
                 logger.severe("...document '" + workitem.getUniqueID()
@@ -195,35 +344,18 @@ public class TrainingService {
                         && "GOOD".equalsIgnoreCase(qualityLevel)) {
                     logger.severe("...document '" + workitem.getUniqueID()
                             + "' TRAININGDATA_QUALITY_LOW but GOOD is required - document will be ignored!");
-                    qualityResult = XMLTrainingData.TRAININGDATA_QUALITY_BAD;
+                    trainingData.setQuality(XMLTrainingData.TRAININGDATA_QUALITY_BAD);
                 } else {
                     logger.info("...document '" + workitem.getUniqueID() + "' TRAININGDATA_QUALITY_LEVEL="
-                            + qualityResult + "...");
-                }
-            }
-
-            // trainingData if quality level is sufficient
-            if (qualityResult != XMLTrainingData.TRAININGDATA_QUALITY_BAD) {
-                // log the XMLTrainingData object....
-                if (debug) {
-                    printXML(trainingData);
+                            + trainingData.getQuality() + "...");
                 }
-                String serviceEndpoint = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_ENDPOINT);
-                MLClient mlClient = new MLClient(serviceEndpoint);
-                String resultData = mlClient.postTrainingData(trainingData, model, mlOptions);
-                trainingResult = new MLTrainingResult(qualityResult, resultData);
-
-            } else {
-                trainingResult = new MLTrainingResult(qualityResult, null);
             }
+            return trainingData;
 
         } catch (PluginException | RestAPIException e1) {
             logger.severe("Error parsing documents: " + e1.getMessage());
         }
-        logger.info("=======================FINISHED====================================");
-
-        return trainingResult;
-
+        return null;
     }
 
     
@@ -266,8 +398,8 @@ public class TrainingService {
             // String ocrText = getTextContent(doc, mlFilenamePattern, workflowClient,
             // ocrMode, tikaOptions);
             if (ocrText != null && !ocrText.isEmpty()) {
-                MLClient mlClient = new MLClient(serviceEndpoint);
-                XMLAnalyseResult result = mlClient.postAnalyseData(ocrText, model);
+                XMLAnalyseResult result = mlClientRegistry.getClient(serviceEndpoint).postAnalyseData(ocrText,
+                        model);
                 return result;
             }
         } catch (PluginException | RestAPIException e1) {
@@ -290,12 +422,33 @@ public class TrainingService {
      * @param workflowClient - a rest client instance
      * @return - quality result
      */
-    @SuppressWarnings("unchecked")
     public MLTrainingResult validateWorkitemData(ItemCollection config, ItemCollection workitem,
             WorkflowClient workflowClient) {
+        try {
+            return validateWorkitemDataAsync(config, workitem, workflowClient).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            logger.severe("...validation of document '" + workitem.getUniqueID() + "' failed: " + cause.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * This method is used to validate of a training data set without updating the
+     * model. The training data is build by the calling thread and posted
+     * asynchronous to the Imixs-ML service. So the caller can fetch the next
+     * documents while the ML service validates the data.
+     * 
+     * @param config         - a config object providing the training configuration
+     * @param workitem       - a workitem providing the data
+     * @param workflowClient - a rest client instance
+     * @return - CompletionStage providing the quality result
+     */
+    @SuppressWarnings("unchecked")
+    public CompletionStage<MLTrainingResult> validateWorkitemDataAsync(ItemCollection config,
+            ItemCollection workitem, WorkflowClient workflowClient) {
         boolean debug = logger.isLoggable(Level.FINE);
-        int qualityResult = -1;
-        MLTrainingResult trainingResult = null;
+        CompletionStage<MLTrainingResult> trainingResult = CompletableFuture.completedFuture(null);
         Pattern mlFilenamePattern = null;
 
         logger.info("=======================START ======================================");
@@ -362,18 +515,18 @@ public class TrainingService {
                 logger.severe("...document '" + workitem.getUniqueID()
                 + "' No text found!");
                 logger.info("=======================FINISHED====================================");
-                return new MLTrainingResult(XMLTrainingData.TRAININGDATA_QUALITY_BAD, null);
+                return CompletableFuture
+                        .completedFuture(new MLTrainingResult(XMLTrainingData.TRAININGDATA_QUALITY_BAD, null));
             }
 
             logger.fine("extracted text content to be analysed=");
             logger.fine(ocrText);
             
             XMLTrainingData trainingData= generateTraingDataSet( ocrText, workitem, trainingItemNames, locals );
-            qualityResult = trainingData.getQuality();
+            int qualityResult = trainingData.getQuality();
             String serviceEndpoint = config.getItemValueString(TrainingApplication.ITEM_ML_TRAINING_ENDPOINT);
-            MLClient mlClient = new MLClient(serviceEndpoint);
-            String resultData = mlClient.postValidateData(trainingData, model);
-            trainingResult = new MLTrainingResult(qualityResult, resultData);
+            trainingResult = mlClientRegistry.getClient(serviceEndpoint).postValidateDataAsync(trainingData, model)
+                    .thenApply(resultData -> new MLTrainingResult(qualityResult, resultData));
 
         
 
@@ -465,7 +618,9 @@ public class TrainingService {
     
         // build training data set...
         return  new TrainingDataBuilder(ocrText, workitem, mlEntities, locals)
-                .setAnalyzerEntityEvents(entityObjectEvents).build();
+                .setAnalyzerEntityEvents(entityObjectEvents)
+                .setEntityAdapterRegistry(entityAdapterRegistry).setEntityVariantCache(entityVariantCache)
+                .setMaxErrors(TrainingDataBuilder.parseMaxErrors(trainingMaxErrors.orElse(null))).build();
     }
 
 
@@ -38,10 +38,10 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
 
-import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.ml.adapters.EntityAdapterRegistry;
 import org.imixs.ml.core.MLConfig;
 import org.imixs.ml.core.MLContentBuilder;
 import org.imixs.ml.core.MLEntity;
@@ -66,7 +66,8 @@ import util.LocaleHelper;
  * <p>
  * By the parameters 'ml.endpoint' and 'ml.locales' the MLAdapter can be
  * configured in the imixs.properties or by environment variables
- * (ML_API_ENDPOINT' and 'ML_LOCALES')
+ * (ML_API_ENDPOINT' and 'ML_LOCALES'). The endpoint can be a comma separated
+ * list of ML service replicas.
  * <p>
  * The Adapter can be optional configured through the model by defining a
  * workflow result tag named 'ml-config'.
@@ -103,6 +104,16 @@ import util.LocaleHelper;
  * }
  * </pre>
  * 
+ * Optional the analysis can be done asynchronously by the MLAnalyseScheduler
+ * after the processing transaction, followed by an optional follow-up event:
+ *
+ * <pre>
+ * {@code
+    <ml-config name="async">true</ml-config>
+    <ml-config name="async.event">200</ml-config>
+ * }
+ * </pre>
+ * 
  * Optional you can add a 'regex' definition to find matches in the text, in
  * case the statistical model did not provide any results.
  *
@@ -130,6 +141,7 @@ public class MLAdapter implements SignalAdapter {
 
     public static final String ML_ENTITY = "entity";
     public static final String API_ERROR = "API_ERROR";
+    public static final String API_UNAVAILABLE = "API_UNAVAILABLE";
 
     public static final int API_EVENT_SUCCESS = 110;
     public static final int API_EVENT_FAILURE = 90;
@@ -163,13 +175,39 @@ public class MLAdapter implements SignalAdapter {
     private MLService mlService;
 
     @Inject
-    private Event<EntityTextEvent> entityTextEvents = null;
+    private EntityAdapterRegistry entityAdapterRegistry;
+
+    @Inject
+    private MLAdapterConfigCache mlAdapterConfigCache;
+
+    @Inject
+    @ConfigProperty(name = MLAnalyseScheduler.ML_ANALYSE_SCHEDULER_ENABLED, defaultValue = "false")
+    boolean analyseSchedulerEnabled;
 
     /**
      * This method posts a text from an attachment to the Imixs-ML Analyse service
-     * endpoint
+     * endpoint. In the asynchronous mode the method only creates an eventLog entry
+     * processed by the MLAnalyseScheduler.
      */
     public ItemCollection execute(ItemCollection document, ItemCollection event) throws AdapterException {
+        return execute(document, event, document.getModelVersion(), document.getTaskID(), document.getEventID(),
+                true);
+    }
+
+    /**
+     * This method analyses a document synchronously, independent of the
+     * asynchronous mode. The method is called by the MLService to process an
+     * asynchronous analysis. The model version, task and event identify the model
+     * event which scheduled the analysis. They can differ from the current values
+     * of the document.
+     */
+    public ItemCollection analyse(ItemCollection document, ItemCollection event, String modelVersion, int taskID,
+            int eventID) throws AdapterException {
+        return execute(document, event, modelVersion, taskID, eventID, false);
+    }
+
+    private ItemCollection execute(ItemCollection document, ItemCollection event, String modelVersion, int taskID,
+            int eventID, boolean allowAsync) throws AdapterException {
         String mlAPIEndpoint = null;
         String mlModelName = null;
         String mlLocals = null;
@@ -178,30 +216,26 @@ public class MLAdapter implements SignalAdapter {
         Pattern mlFilenamePattern = null;
         List<Locale> locals = new ArrayList<Locale>();
         List<MLEntity> mlEntities = null;
+        MLAdapterConfig mlAdapterConfig = null;
         boolean debug = logger.isLoggable(Level.FINE);
-        debug = true;
 
         logger.finest("...running api adapter...");
         ItemCollection mlConfig = null;
         // read optional configuration form the model or imixs.properties....
         try {
             mlConfig = workflowService.evalWorkflowResult(event, "ml-config", document, false);
-
-            mlAPIEndpoint = parseMLEndpointByBPMN(mlConfig);
-            mlModelName = parseMLModelByBPMN(mlConfig);
-            mlLocals = parseMLLocalesByBPMN(mlConfig);
-            mlOptions = parseMLOptionsByBPMN(mlConfig);
-            // mlQuality = parseMLQualityByBPMN(mlConfig);
-            // parse optional filename regex pattern...
-            String _FilenamePattern = parseMLFilePatternByBPMN(mlConfig);
-            if (_FilenamePattern != null && !_FilenamePattern.isEmpty()) {
-                mlFilenamePattern = Pattern.compile(_FilenamePattern);
-            }
-
-            // convert locals definitions into a List of Locales
-            locals = LocaleHelper.parseLocales(mlLocals);
-            // test if the model provides optional entity definitions.
-            mlEntities = parseMLEntitiesByBPMN(mlConfig);
+            // the parsed configuration is cached per model event
+            mlAdapterConfig = mlAdapterConfigCache.getConfig(modelVersion, taskID, eventID, mlConfig,
+                    this::parseMLConfigByBPMN);
+
+            mlAPIEndpoint = mlAdapterConfig.getEndpoint();
+            mlModelName = mlAdapterConfig.getModel();
+            mlLocals = mlAdapterConfig.getLocales();
+            mlOptions = mlAdapterConfig.getOptions();
+            mlFilenamePattern = mlAdapterConfig.getFilenamePattern();
+            locals = mlAdapterConfig.getLocaleList();
+            mlEntities = mlAdapterConfig.getEntities();
+            debug = mlAdapterConfig.isDebug();
         } catch (PluginException e) {
             logger.warning("Unable to parse item definitions for 'ml-config', verify model - " + e.getMessage());
         }
@@ -217,6 +251,17 @@ public class MLAdapter implements SignalAdapter {
                     "imixs-ml wrong service endpoint - should not contain \"/analyzse\" resource!");
         }
 
+        // analyse the document after the transaction?
+        if (allowAsync && mlAdapterConfig != null && mlAdapterConfig.isAsync()) {
+            if (analyseSchedulerEnabled) {
+                logger.finest("......ml analysis of " + document.getUniqueID() + " scheduled");
+                mlService.createAnalyseEvent(document, mlAdapterConfig.getAsyncEvent());
+                return document;
+            }
+            logger.warning("...ml async mode requires the MLAnalyseScheduler ("
+                    + MLAnalyseScheduler.ML_ANALYSE_SCHEDULER_ENABLED + ") - document will be analysed synchronously");
+        }
+
         // build the ml content....
         String mlContent = new MLContentBuilder(document, null, false, mlFilenamePattern).build();
 
@@ -226,12 +271,16 @@ public class MLAdapter implements SignalAdapter {
             XMLAnalyseResult result = mlService.analyseTextByMLFramework(mlContent, mlAPIEndpoint, mlModelName);
             if (result == null) {
                 // interrupt current transaction
+                if (!mlService.isServiceAvailable(mlAPIEndpoint)) {
+                    throw new ProcessingErrorException(MLAdapter.class.getSimpleName(), API_UNAVAILABLE,
+                            "imixs-ml service endpoint " + mlAPIEndpoint + " not available - circuit breaker open!");
+                }
                 throw new ProcessingErrorException(MLAdapter.class.getSimpleName(), API_ERROR,
                         "imixs-ml api error at endpoint: " + mlAPIEndpoint + "!");
             }
             // optional apply regex definitions if defined....
             // this is used to refine the result if ML did not find entities.
-            result = mlService.analyseTextByRegex(mlContent, mlConfig, result);
+            result = mlService.analyseTextByRegex(mlContent, mlConfig, result, modelVersion, taskID, eventID);
 
             /*
              * We now have a list of XMLAnalyseEntity objects possible matching the same
@@ -252,11 +301,11 @@ public class MLAdapter implements SignalAdapter {
                     // If not we do ignore this ml item! issue #34
                     if (document.isItemEmpty(entityDef.getItemName())) {
                         List<String> itemValueList = mlEntity.getValue();
-                        // fire entityTextEvents so that an adapter can resolve the text into a
-                        // object
+                        // dispatch the entityTextEvent so that an adapter can resolve the text into
+                        // a object
                         EntityTextEvent entityTextEvent = new EntityTextEvent(itemValueList, locals,
                                 entityDef.getItemType(), entityDef.getLength());
-                        entityTextEvents.fire(entityTextEvent);
+                        entityAdapterRegistry.fireTextEvent(entityTextEvent);
 
                         Object _resultValueObject = null;
                         // test if we found an object
@@ -303,6 +352,44 @@ public class MLAdapter implements SignalAdapter {
         return document;
     }
 
+    /**
+     * This helper method parses a ml-config into a MLAdapterConfig.
+     * 
+     * @param mlConfig
+     * @return MLAdapterConfig
+     */
+    private MLAdapterConfig parseMLConfigByBPMN(ItemCollection mlConfig) {
+        String mlLocals = parseMLLocalesByBPMN(mlConfig);
+        // parse optional filename regex pattern...
+        Pattern mlFilenamePattern = null;
+        String _FilenamePattern = parseMLFilePatternByBPMN(mlConfig);
+        if (_FilenamePattern != null && !_FilenamePattern.isEmpty()) {
+            mlFilenamePattern = Pattern.compile(_FilenamePattern);
+        }
+        // optional asynchronous mode with a follow-up event
+        boolean async = false;
+        int asyncEvent = 0;
+        if (mlConfig != null) {
+            async = mlConfig.getItemValueBoolean("async");
+            asyncEvent = mlConfig.getItemValueInteger("async.event");
+        }
+        // convert locals definitions into a List of Locales
+        return new MLAdapterConfig(parseMLEndpointByBPMN(mlConfig), parseMLModelByBPMN(mlConfig), mlLocals,
+                LocaleHelper.parseLocales(mlLocals), parseMLOptionsByBPMN(mlConfig), mlFilenamePattern,
+                parseMLEntitiesByBPMN(mlConfig), async, asyncEvent, isDebug(mlConfig));
+    }
+
+    /**
+     * This helper method returns true if the log level is FINE or the ml-config
+     * enables the debug mode.
+     * 
+     * @param mlConfig
+     * @return true if debug mode is enabled
+     */
+    private boolean isDebug(ItemCollection mlConfig) {
+        return logger.isLoggable(Level.FINE) || (mlConfig != null && mlConfig.getItemValueBoolean("debug"));
+    }
+
     /**
      * This helper method parses the ml api endpoint either provided by a model
      * definition or a imixs.property or an environment variable
@@ -311,8 +398,7 @@ public class MLAdapter implements SignalAdapter {
      * @return
      */
     private String parseMLEndpointByBPMN(ItemCollection mlConfig) {
-        boolean debug = logger.isLoggable(Level.FINE);
-        debug = true;
+        boolean debug = isDebug(mlConfig);
         String mlAPIEndpoint = null;
 
         // test if the model provides a MLEndpoint. If not, the adapter uses the
@@ -349,8 +435,7 @@ public class MLAdapter implements SignalAdapter {
      * @return
      */
     private String parseMLModelByBPMN(ItemCollection mlConfig) {
-        boolean debug = logger.isLoggable(Level.FINE);
-        debug = true;
+        boolean debug = isDebug(mlConfig);
         String mlModel = null;
 
         // test if the model provides a MLModel name. If not, the adapter uses the
@@ -380,8 +465,7 @@ public class MLAdapter implements SignalAdapter {
      * @return
      */
     private String parseMLOptionsByBPMN(ItemCollection mlConfig) {
-        boolean debug = logger.isLoggable(Level.FINE);
-        debug = true;
+        boolean debug = isDebug(mlConfig);
         String mlOptions = null;
 
         // test if the model provides options. If not, the adapter uses the
@@ -413,8 +497,7 @@ public class MLAdapter implements SignalAdapter {
      * @return
      */
     private String parseMLFilePatternByBPMN(ItemCollection mlConfig) {
-        boolean debug = logger.isLoggable(Level.FINE);
-        debug = true;
+        boolean debug = isDebug(mlConfig);
         String filePattern = null;
 
         // test if the model provides a MLModel name. If not, the adapter uses the
@@ -0,0 +1,166 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+package org.imixs.ml.workflow;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+import org.imixs.ml.core.MLEntity;
+
+/**
+ * The MLAdapterConfig holds the parsed ml-config of a BPMN event used by the
+ * MLAdapter. This is the ml service endpoint, the model name, the locales, the
+ * options, an optional filename pattern, the entity definitions, the
+ * optional asynchronous mode with a follow-up event and the debug mode.
+ * <p>
+ * A MLAdapterConfig is immutable and can be shared by all documents processed
+ * by the same event. See the MLAdapterConfigCache.
+ * 
+ * @author rsoika
+ *
+ */
+public class MLAdapterConfig {
+
+    private final String endpoint;
+    private final String model;
+    private final String locales;
+    private final List<Locale> localeList;
+    private final String options;
+    private final Pattern filenamePattern;
+    private final List<MLEntity> entities;
+    private final boolean async;
+    private final int asyncEvent;
+    private final boolean debug;
+
+    /**
+     * Creates a new MLAdapterConfig.
+     * 
+     * @param endpoint        - the ml service endpoint
+     * @param model           - the ml model name
+     * @param locales         - comma separated list of locales
+     * @param localeList      - the parsed locales
+     * @param options         - optional ml options
+     * @param filenamePattern - optional filename pattern or null
+     * @param entities        - the entity definitions
+     */
+    public MLAdapterConfig(String endpoint, String model, String locales, List<Locale> localeList, String options,
+            Pattern filenamePattern, List<MLEntity> entities) {
+        this(endpoint, model, locales, localeList, options, filenamePattern, entities, false, 0);
+    }
+
+    /**
+     * Creates a new MLAdapterConfig with an asynchronous mode.
+     * 
+     * @param endpoint        - the ml service endpoint
+     * @param model           - the ml model name
+     * @param locales         - comma separated list of locales
+     * @param localeList      - the parsed locales
+     * @param options         - optional ml options
+     * @param filenamePattern - optional filename pattern or null
+     * @param entities        - the entity definitions
+     * @param async           - true if the analysis is done asynchronously
+     * @param asyncEvent      - optional follow-up event of an asynchronous
+     *                        analysis or 0
+     */
+    public MLAdapterConfig(String endpoint, String model, String locales, List<Locale> localeList, String options,
+            Pattern filenamePattern, List<MLEntity> entities, boolean async, int asyncEvent) {
+        this(endpoint, model, locales, localeList, options, filenamePattern, entities, async, asyncEvent, false);
+    }
+
+    /**
+     * Creates a new MLAdapterConfig with an asynchronous mode and a debug mode.
+     * 
+     * @param endpoint        - the ml service endpoint
+     * @param model           - the ml model name
+     * @param locales         - comma separated list of locales
+     * @param localeList      - the parsed locales
+     * @param options         - optional ml options
+     * @param filenamePattern - optional filename pattern or null
+     * @param entities        - the entity definitions
+     * @param async           - true if the analysis is done asynchronously
+     * @param asyncEvent      - optional follow-up event of an asynchronous
+     *                        analysis or 0
+     * @param debug           - true if the analysis results should be logged
+     */
+    public MLAdapterConfig(String endpoint, String model, String locales, List<Locale> localeList, String options,
+            Pattern filenamePattern, List<MLEntity> entities, boolean async, int asyncEvent, boolean debug) {
+        this.endpoint = endpoint;
+        this.model = model;
+        this.locales = locales;
+        this.localeList = Collections.unmodifiableList(localeList);
+        this.options = options;
+        this.filenamePattern = filenamePattern;
+        this.entities = Collections.unmodifiableList(entities);
+        this.async = async;
+        this.asyncEvent = asyncEvent;
+        this.debug = debug;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public String getLocales() {
+        return locales;
+    }
+
+    public List<Locale> getLocaleList() {
+        return localeList;
+    }
+
+    public String getOptions() {
+        return options;
+    }
+
+    public Pattern getFilenamePattern() {
+        return filenamePattern;
+    }
+
+    public List<MLEntity> getEntities() {
+        return entities;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getAsyncEvent() {
+        return asyncEvent;
+    }
+
+    public boolean isDebug() {
+        return debug;
+    }
+
+}
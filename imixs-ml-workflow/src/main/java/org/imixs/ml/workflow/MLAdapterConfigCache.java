@@ -0,0 +1,109 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+package org.imixs.ml.workflow;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import org.imixs.workflow.ItemCollection;
+
+/**
+ * The MLAdapterConfigCache holds the parsed ml-config of the MLAdapter per
+ * model version, task and event. So the MLAdapter does not need to parse the
+ * entity definitions, the locales and the filename pattern each time a document
+ * is processed.
+ * <p>
+ * The ml-config of an event can contain item dependent expressions. For this
+ * reason the ml-config is still evaluated for each document. A cache entry is
+ * only used if the evaluated ml-config is equal to the ml-config the entry was
+ * parsed from. Otherwise the ml-config is parsed again and replaces the entry.
+ * So an updated model or a document dependent ml-config never uses an outdated
+ * entry.
+ * 
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class MLAdapterConfigCache {
+
+    private Map<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    /**
+     * Returns the parsed ml-config of a model event. If no valid cache entry
+     * exists, the ml-config is parsed by the given parser.
+     * 
+     * @param modelVersion - the model version of the event
+     * @param taskID       - the task of the event
+     * @param eventID      - the event id
+     * @param mlConfig     - the evaluated ml-config of the event
+     * @param parser       - parses a ml-config
+     * @return MLAdapterConfig
+     */
+    public MLAdapterConfig getConfig(String modelVersion, int taskID, int eventID, ItemCollection mlConfig,
+            Function<ItemCollection, MLAdapterConfig> parser) {
+        if (mlConfig == null) {
+            return parser.apply(mlConfig);
+        }
+        String key = modelVersion + "|" + taskID + "|" + eventID;
+        Map<String, List<Object>> items = mlConfig.getAllItems();
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.items.equals(items)) {
+            return entry.config;
+        }
+        MLAdapterConfig config = parser.apply(mlConfig);
+        // the evaluated ml-config is only read, so the items are not copied
+        cache.put(key, new CacheEntry(items, config));
+        return config;
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    private static class CacheEntry {
+        private Map<String, List<Object>> items;
+        private MLAdapterConfig config;
+
+        CacheEntry(Map<String, List<Object>> items, MLAdapterConfig config) {
+            this.items = items;
+            this.config = config;
+        }
+    }
+
+}
@@ -0,0 +1,328 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.workflow;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.inject.Instance;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.eclipse.microprofile.metrics.Gauge;
+import org.eclipse.microprofile.metrics.Metadata;
+import org.eclipse.microprofile.metrics.MetricRegistry;
+import org.eclipse.microprofile.metrics.MetricType;
+import org.imixs.ml.xml.XMLAnalyseCategory;
+import org.imixs.ml.xml.XMLAnalyseEntity;
+import org.imixs.ml.xml.XMLAnalyseResult;
+
+/**
+ * The MLAnalyseCache holds the results of the ML framework for already analysed
+ * texts. An entry is identified by the ML service endpoint, the model name and
+ * the SHA-256 hash of the analysed text. So the MLAdapter can skip the ML
+ * service call if an unchanged text is analysed again, e.g. if an event is
+ * processed twice or a transaction was rolled back.
+ * <p>
+ * The cache is disabled by default and can be configured by the following
+ * properties:
+ * <ul>
+ * <li>ml.cache.size - maximum number of cached results (default 0 = disabled)
+ * <li>ml.cache.ttl - time in milliseconds a result is valid (default 3600000)
+ * </ul>
+ * If the cache is full, the least recently used entry is removed. All entries
+ * of a model are removed if the model is retrained by the MLService.
+ * <p>
+ * The hit and miss counters are exposed by the gauges 'ml.cache.hits',
+ * 'ml.cache.misses' and 'ml.cache.size' if MicroProfile Metrics is available.
+ * 
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class MLAnalyseCache {
+
+    private static Logger logger = Logger.getLogger(MLAnalyseCache.class.getName());
+
+    public static final String ML_CACHE_SIZE = "ml.cache.size";
+    public static final String ML_CACHE_TTL = "ml.cache.ttl";
+
+    public static final String METRIC_CACHE_HITS = "ml.cache.hits";
+    public static final String METRIC_CACHE_MISSES = "ml.cache.misses";
+    public static final String METRIC_CACHE_SIZE = "ml.cache.size";
+
+    @Inject
+    @ConfigProperty(name = ML_CACHE_SIZE, defaultValue = "0")
+    int maxSize;
+
+    @Inject
+    @ConfigProperty(name = ML_CACHE_TTL, defaultValue = "3600000")
+    long ttl;
+
+    @Inject
+    Instance<MetricRegistry> metricRegistryInstance;
+
+    private AtomicLong hits = new AtomicLong();
+    private AtomicLong misses = new AtomicLong();
+
+    private Map<CacheKey, CacheEntry> cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+            return size() > maxSize;
+        }
+    };
+
+    /**
+     * Registers the cache metrics if the cache is enabled.
+     */
+    @PostConstruct
+    void init() {
+        if (!isEnabled()) {
+            return;
+        }
+        logger.info("...ml analyse cache enabled (size=" + maxSize + ", ttl=" + ttl + ")");
+        if (metricRegistryInstance != null && metricRegistryInstance.isResolvable()) {
+            MetricRegistry metricRegistry = metricRegistryInstance.get();
+            try {
+                metricRegistry.register(buildGaugeMetadata(METRIC_CACHE_HITS, "Number of ml analyse cache hits"),
+                        (Gauge<Long>) this::getHits);
+                metricRegistry.register(
+                        buildGaugeMetadata(METRIC_CACHE_MISSES, "Number of ml analyse cache misses"),
+                        (Gauge<Long>) this::getMisses);
+                metricRegistry.register(
+                        buildGaugeMetadata(METRIC_CACHE_SIZE, "Number of entries in the ml analyse cache"),
+                        (Gauge<Integer>) this::getSize);
+            } catch (IllegalArgumentException e) {
+                logger.warning("......failed to register ml cache metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Returns true if the cache is enabled
+     * 
+     * @return
+     */
+    public boolean isEnabled() {
+        return maxSize > 0;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public synchronized int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Returns a copy of the cached XMLAnalyseResult for the given text or null if
+     * no valid entry exists.
+     * 
+     * @param serviceEndpoint - the ml API endpoint
+     * @param model           - the ML model name
+     * @param text            - the analysed text
+     * @return copy of the cached XMLAnalyseResult or null
+     */
+    public XMLAnalyseResult get(String serviceEndpoint, String model, String text) {
+        if (!isEnabled()) {
+            return null;
+        }
+        CacheKey key = new CacheKey(serviceEndpoint, model, text);
+        CacheEntry entry;
+        synchronized (this) {
+            entry = cache.get(key);
+            if (entry != null && ttl > 0 && System.currentTimeMillis() - entry.created > ttl) {
+                cache.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return copy(entry.result);
+    }
+
+    /**
+     * Stores a copy of a XMLAnalyseResult for the given text.
+     * 
+     * @param serviceEndpoint - the ml API endpoint
+     * @param model           - the ML model name
+     * @param text            - the analysed text
+     * @param result          - the result of the ML framework
+     */
+    public void put(String serviceEndpoint, String model, String text, XMLAnalyseResult result) {
+        if (!isEnabled() || result == null) {
+            return;
+        }
+        CacheKey key = new CacheKey(serviceEndpoint, model, text);
+        CacheEntry entry = new CacheEntry(copy(result));
+        synchronized (this) {
+            cache.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes all entries of a model. This method is called after the model was
+     * retrained.
+     * 
+     * @param serviceEndpoint - the ml API endpoint
+     * @param model           - the ML model name
+     */
+    public synchronized void invalidate(String serviceEndpoint, String model) {
+        String endpoint = normalizeEndpoint(serviceEndpoint);
+        Iterator<CacheKey> iter = cache.keySet().iterator();
+        while (iter.hasNext()) {
+            CacheKey key = iter.next();
+            if (key.endpoint.equals(endpoint) && key.model.equals(model)) {
+                iter.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private Metadata buildGaugeMetadata(String name, String description) {
+        return Metadata.builder().withName(name).withDescription(description).withType(MetricType.GAUGE).build();
+    }
+
+    /**
+     * Creates a deep copy of a XMLAnalyseResult. The MLAdapter refines a result by
+     * regex entities, so a cached result must never be shared.
+     * 
+     * @param result
+     * @return copy
+     */
+    private static XMLAnalyseResult copy(XMLAnalyseResult result) {
+        XMLAnalyseResult copy = new XMLAnalyseResult();
+        if (result.getEntities() != null) {
+            for (XMLAnalyseEntity entity : result.getEntities()) {
+                copy.getEntities().add(new XMLAnalyseEntity(entity.getLabel(), entity.getText()));
+            }
+        }
+        if (result.getCategories() != null) {
+            for (XMLAnalyseCategory category : result.getCategories()) {
+                copy.getCategories().add(new XMLAnalyseCategory(category.getLabel(), category.getScore()));
+            }
+        }
+        return copy;
+    }
+
+    private static String normalizeEndpoint(String serviceEndpoint) {
+        String endpoint = serviceEndpoint == null ? "" : serviceEndpoint.trim();
+        // the service endpoint must not end with a /
+        if (endpoint.endsWith("/")) {
+            endpoint = endpoint.substring(0, endpoint.length() - 1);
+        }
+        return endpoint;
+    }
+
+    /**
+     * Computes the SHA-256 hash of a text.
+     * 
+     * @param text
+     * @return hex string
+     */
+    private static String hash(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = digest.digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes) {
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is supported by every JVM
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The cache key identifying a text analysed by a model of a ML endpoint.
+     */
+    private static class CacheKey {
+        private String endpoint;
+        private String model;
+        private String hash;
+
+        CacheKey(String serviceEndpoint, String model, String text) {
+            this.endpoint = normalizeEndpoint(serviceEndpoint);
+            this.model = model == null ? "" : model;
+            this.hash = hash(text);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return hash.equals(other.hash) && endpoint.equals(other.endpoint) && model.equals(other.model);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(endpoint, model, hash);
+        }
+    }
+
+    private static class CacheEntry {
+        private XMLAnalyseResult result;
+        private long created;
+
+        CacheEntry(XMLAnalyseResult result) {
+            this.result = result;
+            this.created = System.currentTimeMillis();
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import jakarta.annotation.security.DeclareRoles;
+import jakarta.annotation.security.RunAs;
+import jakarta.ejb.LocalBean;
+import jakarta.ejb.Singleton;
+import jakarta.ejb.Startup;
+import jakarta.ejb.Timeout;
+import jakarta.ejb.Timer;
+import jakarta.ejb.TimerConfig;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
+import jakarta.inject.Inject;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.imixs.workflow.engine.EventLogService;
+import org.imixs.workflow.engine.jpa.EventLog;
+
+/**
+ * The MLAnalyseScheduler starts a scheduler service to process asynchronous ml
+ * analyse events created by the MLAdapter.
+ * <p>
+ * The scheduler locks the eventLog entries of the topic 'ml.analyse' and
+ * submits each entry to a ManagedExecutorService. So the analysis of several
+ * workitems runs in parallel and does not block the processing transactions.
+ * Each workitem is analysed and updated by the MLService in a new transaction.
+ * If the analysis fails, e.g. because the workitem was modified in the
+ * meantime, the entry is rescheduled with a growing delay. If the analysis
+ * still fails after the maximum number of retries, the entry is moved to the
+ * topic 'ml.analyse.error'.
+ * <p>
+ * The scheduler can be configured by the following properties:
+ * <ul>
+ * <li>ml.analyse.scheduler.enabled - enables the scheduler (default false)
+ * <li>ml.analyse.scheduler.interval - timeout interval in ms (default 10000)
+ * <li>ml.analyse.scheduler.initialdelay - initial delay in ms (default 60000)
+ * <li>ml.analyse.scheduler.batchsize - maximum entries per run (default 10)
+ * <li>ml.analyse.scheduler.maxretries - maximum retries of a failed analysis
+ * (default 10)
+ * <li>ml.analyse.scheduler.retrydelay - delay in ms of the first retry, doubled
+ * with each further retry (default 10000)
+ * </ul>
+ * 
+ * @see MLService
+ * @version 1.0
+ * @author rsoika
+ *
+ */
+@DeclareRoles({ "org.imixs.ACCESSLEVEL.MANAGERACCESS" })
+@RunAs("org.imixs.ACCESSLEVEL.MANAGERACCESS")
+@Startup
+@Singleton
+@LocalBean
+public class MLAnalyseScheduler {
+
+    public static final String ML_ANALYSE_SCHEDULER_ENABLED = "ml.analyse.scheduler.enabled";
+    public static final String ML_ANALYSE_SCHEDULER_INTERVAL = "ml.analyse.scheduler.interval";
+    public static final String ML_ANALYSE_SCHEDULER_INITIALDELAY = "ml.analyse.scheduler.initialdelay";
+    public static final String ML_ANALYSE_SCHEDULER_BATCHSIZE = "ml.analyse.scheduler.batchsize";
+    public static final String ML_ANALYSE_SCHEDULER_MAXRETRIES = "ml.analyse.scheduler.maxretries";
+    public static final String ML_ANALYSE_SCHEDULER_RETRYDELAY = "ml.analyse.scheduler.retrydelay";
+
+    // locked entries of a failed cluster member are released after 5 minutes
+    private static final long DEADLOCK_INTERVAL = 300000;
+
+    // enabled
+    @Inject
+    @ConfigProperty(name = ML_ANALYSE_SCHEDULER_ENABLED, defaultValue = "false")
+    boolean enabled;
+
+    // timeout interval in ms - default every 10 seconds
+    @Inject
+    @ConfigProperty(name = ML_ANALYSE_SCHEDULER_INTERVAL, defaultValue = "10000")
+    long interval;
+
+    // initial delay in ms - default 1 min
+    @Inject
+    @ConfigProperty(name = ML_ANALYSE_SCHEDULER_INITIALDELAY, defaultValue = "60000")
+    long initialDelay;
+
+    // maximum number of entries processed per run
+    @Inject
+    @ConfigProperty(name = ML_ANALYSE_SCHEDULER_BATCHSIZE, defaultValue = "10")
+    int batchSize;
+
+    private static Logger logger = Logger.getLogger(MLAnalyseScheduler.class.getName());
+
+    @Resource
+    jakarta.ejb.TimerService timerService;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    @Inject
+    MLService mlService;
+
+    @Inject
+    EventLogService eventLogService;
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            logger.info(
+                    "Starting MLAnalyseScheduler - initalDelay=" + initialDelay + "  inverval=" + interval + " ....");
+            // Registering a non-persistent Timer Service.
+            final TimerConfig timerConfig = new TimerConfig();
+            timerConfig.setInfo("Imixs-Workflow MLAnalyseScheduler");
+            timerConfig.setPersistent(false);
+            timerService.createIntervalTimer(initialDelay, interval, timerConfig);
+        }
+    }
+
+    /**
+     * The method reads the eventLog for analyse events and delegates the analysis
+     * of each workitem to the stateless ejb MLService. The method waits until all
+     * workitems are analysed.
+     */
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void run(Timer timer) {
+        long l = System.currentTimeMillis();
+        eventLogService.releaseDeadLocks(DEADLOCK_INTERVAL, MLService.EVENTLOG_TOPIC_ANALYSE);
+        // test for new event log entries by timeout...
+        List<EventLog> events = eventLogService.findEventsByTimeout(batchSize, MLService.EVENTLOG_TOPIC_ANALYSE);
+        if (events.size() == 0) {
+            return;
+        }
+        logger.info("... " + events.size() + " new MLAnalyseEvents found....");
+
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        for (EventLog eventLogEntry : events) {
+            // the entry may be locked by another cluster member
+            if (eventLogService.lock(eventLogEntry)) {
+                tasks.add(executorService.submit(() -> analyse(eventLogEntry)));
+            }
+        }
+        for (Future<?> task : tasks) {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                logger.warning("...ml analysis failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        logger.info("..." + tasks.size() + " MLAnalyseEvents processed in " + (System.currentTimeMillis() - l)
+                + "ms");
+    }
+
+    /**
+     * Analyses the workitem of an eventLog entry. The MLService removes the entry
+     * after the workitem was updated. If the analysis fails, the entry is
+     * rescheduled.
+     */
+    private void analyse(EventLog eventLogEntry) {
+        try {
+            mlService.analyseWorkitem(eventLogEntry);
+        } catch (Exception e) {
+            logger.warning("...ml analysis of workitem '" + eventLogEntry.getRef() + "' failed: " + e.getMessage());
+            mlService.retryAnalyseEvent(eventLogEntry, e);
+        }
+    }
+
+}
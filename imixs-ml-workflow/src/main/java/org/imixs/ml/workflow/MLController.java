@@ -200,22 +200,28 @@ public class MLController implements Serializable {
         // search text is lower case!
         String searchText = text.toLowerCase();
 
-        String searchPhrase = phrase.toLowerCase();
-        String originSearchPhrase = searchPhrase;
+        String originSearchPhrase = phrase.toLowerCase();
+        // a computed search phrase is a previous hit followed by a space. The hit is
+        // held by its position in the search text to avoid substrings. A
+        // phraseStart of -1 means the origin search phrase.
+        int phraseStart = -1;
+        int phraseLength = originSearchPhrase.length();
 
         // find start pos...
         int index = 0;
         while (true) {
-            int found = searchText.indexOf(searchPhrase, index);
+            int found;
+            if (phraseStart == -1) {
+                found = searchText.indexOf(originSearchPhrase, index);
+            } else {
+                found = indexOfHit(searchText, phraseStart, phraseLength - 1, index);
+            }
             if (found > -1) {
-                String hit = null;
                 boolean tailingSpace = false;
                 int endPos = -1;
                 // test if the text ends with a space or a newline
-                int nextSpacePos = searchText.indexOf(" ", found + searchPhrase.length() + 0);
-                // int nextStopPhrase = searchText.indexOf("\n", found + searchPhrase.length() +
-                // 1);
-                int nextStopPhrase = indexOfStopPhrase(searchText, found + searchPhrase.length() + 0);
+                int nextSpacePos = searchText.indexOf(" ", found + phraseLength + 0);
+                int nextStopPhrase = indexOfStopPhrase(searchText, found + phraseLength + 0);
 
                 if (nextStopPhrase > -1) {
                     // there was a stopPhrase, so this may be the best match...
@@ -232,20 +238,29 @@ public class MLController implements Serializable {
                     }
                 }
 
-                if (endPos > -1) {
-                    hit = text.substring(found, endPos).trim();
-                }
-
-                if (hit == null) {
+                if (endPos == -1) {
                     break;
                 }
+                // trim the hit
+                int hitStart = found;
+                int hitEnd = endPos;
+                while (hitStart < hitEnd && text.charAt(hitStart) <= ' ') {
+                    hitStart++;
+                }
+                while (hitEnd > hitStart && text.charAt(hitEnd - 1) <= ' ') {
+                    hitEnd--;
+                }
                 // if the hit is longer than 64 chars - we cut it....
-                if (hit.length() > 64) {
-                    hit = hit.substring(0, 64).trim();
+                if (hitEnd - hitStart > 64) {
+                    hitEnd = hitStart + 64;
+                    while (hitEnd > hitStart && text.charAt(hitEnd - 1) <= ' ') {
+                        hitEnd--;
+                    }
                 }
+                int hitLength = hitEnd - hitStart;
 
-                if (!result.contains(hit)) {
-
+                if (!containsHit(result, text, hitStart, hitLength)) {
+                    String hit = text.substring(hitStart, hitEnd);
                     // We are cleaning the hit from tailing special characters
                     // hits like "Software &" should not be returned
                     // hits like "Software & Hardware" are ok
@@ -255,23 +270,32 @@ public class MLController implements Serializable {
                     }
                 }
                 // lets see if it makes sense to search for variant with spaces
-                if (tailingSpace && !searchPhrase.equals(hit.toLowerCase() + " ")) {
-                    searchPhrase = hit.toLowerCase() + " ";
+                if (tailingSpace && !isSearchPhrase(searchText, originSearchPhrase, phraseStart, phraseLength,
+                        hitStart, hitLength)) {
+                    phraseStart = hitStart;
+                    phraseLength = hitLength + 1;
+                    if (isSearchPhrase(searchText, originSearchPhrase, -1, originSearchPhrase.length(), hitStart,
+                            hitLength)) {
+                        // the computed phrase equals the origin phrase
+                        phraseStart = -1;
+                    }
                 } else {
                     // reset to origin search phrase
-                    searchPhrase = originSearchPhrase;
-                    index = found + hit.length() + 1;
+                    phraseStart = -1;
+                    phraseLength = originSearchPhrase.length();
+                    index = found + hitLength + 1;
                 }
 
             } else {
                 // do we still work with the originSearchPhrase?
-                if (searchPhrase.equals(originSearchPhrase)) {
+                if (phraseStart == -1) {
                     // no more matches
                     break;
                 } else {
                     // reset origin phrase
-                    index = index + searchPhrase.length() + 1;
-                    searchPhrase = originSearchPhrase;
+                    index = index + phraseLength + 1;
+                    phraseStart = -1;
+                    phraseLength = originSearchPhrase.length();
                 }
 
             }
@@ -283,17 +307,60 @@ public class MLController implements Serializable {
 
         }
 
-        // Finally clean the result set entries with tailing special characters
-        // hits like "Software &" should not be returned
-        // hits like "Software & Hardware" are ok
-        // so we look for special characters to filter bad looking results
-        // List<String> cleanedResult = result.stream().filter(c ->
-        // endsWithSpecialCharacter(c)==false).collect(Collectors.toList());
-
-        // return cleanedResult;
         return result;
     }
 
+    /**
+     * Returns the position of a hit followed by a space in the search text. The
+     * hit is given by its position in the search text.
+     * 
+     * @return position or -1 if not found
+     */
+    private static int indexOfHit(String searchText, int hitStart, int hitLength, int fromIndex) {
+        if (hitLength == 0) {
+            return searchText.indexOf(' ', fromIndex);
+        }
+        char first = searchText.charAt(hitStart);
+        int last = searchText.length() - hitLength - 1;
+        int pos = searchText.indexOf(first, fromIndex);
+        while (pos > -1 && pos <= last) {
+            if (searchText.charAt(pos + hitLength) == ' '
+                    && searchText.regionMatches(pos, searchText, hitStart, hitLength)) {
+                return pos;
+            }
+            pos = searchText.indexOf(first, pos + 1);
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the current search phrase equals a hit followed by a space.
+     */
+    private static boolean isSearchPhrase(String searchText, String originSearchPhrase, int phraseStart,
+            int phraseLength, int hitStart, int hitLength) {
+        if (phraseLength != hitLength + 1) {
+            return false;
+        }
+        if (phraseStart == -1) {
+            return originSearchPhrase.charAt(hitLength) == ' '
+                    && originSearchPhrase.regionMatches(0, searchText, hitStart, hitLength);
+        }
+        return searchText.regionMatches(phraseStart, searchText, hitStart, hitLength);
+    }
+
+    /**
+     * Returns true if the result list contains the hit at the given position of
+     * the text.
+     */
+    private static boolean containsHit(List<String> result, String text, int hitStart, int hitLength) {
+        for (String entry : result) {
+            if (entry.length() == hitLength && text.regionMatches(hitStart, entry, 0, hitLength)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * This helper method tests if a given string ends with a special character like
      * '&', '.', ',', ...
@@ -0,0 +1,159 @@
+/*  
+ *  Imixs-Workflow 
+ *  
+ *  Copyright (C) 2001-2020 Imixs Software Solutions GmbH,  
+ *  http://www.imixs.com
+ *  
+ *  This program is free software; you can redistribute it and/or 
+ *  modify it under the terms of the GNU General Public License 
+ *  as published by the Free Software Foundation; either version 2 
+ *  of the License, or (at your option) any later version.
+ *  
+ *  This program is distributed in the hope that it will be useful, 
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of 
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU 
+ *  General Public License for more details.
+ *  
+ *  You can receive a copy of the GNU General Public
+ *  License at http://www.gnu.org/licenses/gpl.html
+ *  
+ *  Project: 
+ *      https://www.imixs.org
+ *      https://github.com/imixs/imixs-workflow
+ *  
+ *  Contributors:  
+ *      Imixs Software Solutions GmbH - Project Management
+ *      Ralph Soika - Software Developer
+ */
+
+package org.imixs.ml.workflow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+import jakarta.enterprise.context.ApplicationScoped;
+
+import org.imixs.workflow.ItemCollection;
+import org.imixs.workflow.exceptions.PluginException;
+import org.imixs.workflow.util.XMLParser;
+
+/**
+ * The MLRegexCache holds the parsed and compiled regex definitions of a
+ * ml-config. The definitions are cached per model version, task and event. So
+ * the MLService does not need to parse the XML definitions and compile the
+ * patterns each time an event is processed.
+ * <p>
+ * Like the MLAdapterConfigCache, a cache entry is only used if the evaluated
+ * regex definitions are equal to the definitions the entry was parsed from.
+ * Otherwise the definitions are parsed again and replace the entry. So an
+ * updated model or a document dependent ml-config never uses an outdated
+ * entry.
+ * 
+ * @author rsoika
+ *
+ */
+@ApplicationScoped
+public class MLRegexCache {
+
+    private static Logger logger = Logger.getLogger(MLRegexCache.class.getName());
+
+    private Map<String, CacheEntry> cache = new ConcurrentHashMap<String, CacheEntry>();
+
+    /**
+     * Returns the compiled regex definitions of a ml-config for a model event.
+     * 
+     * @param modelVersion - the model version of the event
+     * @param taskID       - the task of the event
+     * @param eventID      - the event id
+     * @param regexDevList - the regex definitions of the ml-config
+     * @return list of RegexDefinition
+     */
+    public List<RegexDefinition> getDefinitions(String modelVersion, int taskID, int eventID,
+            List<String> regexDevList) {
+        String key = modelVersion + "|" + taskID + "|" + eventID;
+        CacheEntry entry = cache.get(key);
+        if (entry != null && entry.regexDevList.equals(regexDevList)) {
+            return entry.definitions;
+        }
+        List<RegexDefinition> definitions = parseDefinitions(regexDevList);
+        // the evaluated ml-config is only read, so the list is not copied
+        cache.put(key, new CacheEntry(regexDevList, definitions));
+        return definitions;
+    }
+
+    public int getSize() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Parses a list of regex definitions in XML format and compiles the patterns.
+     * Empty and invalid definitions are skipped.
+     * 
+     * @param regexDevList - the regex definitions of the ml-config
+     * @return list of RegexDefinition
+     */
+    public static List<RegexDefinition> parseDefinitions(List<String> regexDevList) {
+        List<RegexDefinition> result = new ArrayList<RegexDefinition>();
+        for (String regexDev : regexDevList) {
+            if (regexDev.trim().isEmpty()) {
+                // no definition
+                continue;
+            }
+            try {
+                // evaluate the item content (XML format expected here!)
+                ItemCollection regexData = XMLParser.parseItemStructure(regexDev);
+                if (regexData != null) {
+                    result.add(new RegexDefinition(regexData.getItemValueString("name"),
+                            Pattern.compile(regexData.getItemValueString("pattern"))));
+                }
+            } catch (PluginException e) {
+                logger.warning("Invalid ml.config definition with unexpected regex element - verify model!");
+            }
+        }
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * A regex definition with the entity name and the compiled pattern.
+     */
+    public static class RegexDefinition {
+        private String name;
+        private Pattern pattern;
+
+        public RegexDefinition(String name, Pattern pattern) {
+            this.name = name;
+            this.pattern = pattern;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Pattern getPattern() {
+            return pattern;
+        }
+    }
+
+    private static class CacheEntry {
+        private List<String> regexDevList;
+        private List<RegexDefinition> definitions;
+
+        CacheEntry(List<String> regexDevList, List<RegexDefinition> definitions) {
+            this.regexDevList = regexDevList;
+            this.definitions = definitions;
+        }
+    }
+
+}
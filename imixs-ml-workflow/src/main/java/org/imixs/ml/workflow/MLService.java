@@ -2,27 +2,39 @@ package org.imixs.ml.workflow;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import jakarta.annotation.Resource;
 import jakarta.ejb.LocalBean;
 import jakarta.ejb.Stateless;
+import jakarta.ejb.TransactionAttribute;
+import jakarta.ejb.TransactionAttributeType;
+import jakarta.enterprise.concurrent.ManagedExecutorService;
 import jakarta.enterprise.event.Event;
 import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.inject.Instance;
 import jakarta.inject.Inject;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
-import org.imixs.ml.core.MLClient;
+import org.imixs.ml.adapters.EntityAdapterRegistry;
+import org.imixs.ml.core.MLClientRegistry;
 import org.imixs.ml.core.MLConfig;
 import org.imixs.ml.core.MLEntity;
 import org.imixs.ml.core.MLTrainingResult;
 import org.imixs.ml.events.EntityObjectEvent;
+import org.imixs.ml.training.EntityVariantCache;
 import org.imixs.ml.training.TrainingDataBuilder;
+import org.imixs.ml.workflow.MLRegexCache.RegexDefinition;
 import org.imixs.ml.xml.XMLAnalyseEntity;
 import org.imixs.ml.xml.XMLAnalyseResult;
 import org.imixs.ml.xml.XMLTrainingData;
@@ -33,9 +45,12 @@ import org.imixs.workflow.engine.EventLogService;
 import org.imixs.workflow.engine.ModelService;
 import org.imixs.workflow.engine.ProcessingEvent;
 import org.imixs.workflow.engine.WorkflowService;
+import org.imixs.workflow.engine.jpa.EventLog;
+import org.imixs.workflow.exceptions.AccessDeniedException;
+import org.imixs.workflow.exceptions.AdapterException;
 import org.imixs.workflow.exceptions.ModelException;
 import org.imixs.workflow.exceptions.PluginException;
-import org.imixs.workflow.util.XMLParser;
+import org.imixs.workflow.exceptions.ProcessingErrorException;
 
 import util.LocaleHelper;
 
@@ -74,15 +89,58 @@ public class MLService implements Serializable {
     public static final String ML_STATUS_TRAINING = "training";
 
     public static final String EVENTLOG_TOPIC_TRAINING = "ml.training";
+    public static final String EVENTLOG_TOPIC_ANALYSE = "ml.analyse";
+    public static final String EVENTLOG_TOPIC_ANALYSE_ERROR = "ml.analyse.error";
+
+    public static final String ITEM_ML_ASYNC_EVENT = "ml.async.event";
+    public static final String ITEM_ML_RETRIES = "ml.retries";
+    public static final String ITEM_ML_ERROR = "ml.error";
+
+    // the retry delay of an asynchronous ml analysis grows up to 1 hour
+    private static final long MAX_RETRY_DELAY = 3600000;
 
     // enabled
     @Inject
     @ConfigProperty(name = MLTrainingScheduler.ML_TRAINING_SCHEDULER_ENABLED, defaultValue = "false")
     boolean trainingSchedulerEnabled;
 
+    // search the entities of a training document in parallel
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_TRAINING_PARALLEL, defaultValue = "false")
+    boolean trainingParallel;
+
+    @Resource
+    ManagedExecutorService executorService;
+
+    // errors per item type to find entity values in an OCR text
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_TRAINING_MAXERRORS)
+    Optional<String> trainingMaxErrors;
+
+    // maximum number of retries of an asynchronous ml analysis
+    @Inject
+    @ConfigProperty(name = MLAnalyseScheduler.ML_ANALYSE_SCHEDULER_MAXRETRIES, defaultValue = "10")
+    int analyseMaxRetries;
+
+    // delay in ms of the first retry of an asynchronous ml analysis
+    @Inject
+    @ConfigProperty(name = MLAnalyseScheduler.ML_ANALYSE_SCHEDULER_RETRYDELAY, defaultValue = "10000")
+    long analyseRetryDelay;
+
+    // maximum number of regex matches per item (0 = no limit)
+    @Inject
+    @ConfigProperty(name = MLConfig.ML_REGEX_MAXMATCHES, defaultValue = "0")
+    int regexMaxMatches;
+
     @Inject
     protected Event<EntityObjectEvent> entityObjectEvents;
 
+    @Inject
+    protected EntityVariantCache entityVariantCache;
+
+    @Inject
+    protected EntityAdapterRegistry entityAdapterRegistry;
+
     @Inject
     protected ModelService modelService;
 
@@ -92,6 +150,18 @@ public class MLService implements Serializable {
     @Inject
     protected EventLogService eventLogService;
 
+    @Inject
+    protected MLClientRegistry mlClientRegistry;
+
+    @Inject
+    protected MLAnalyseCache mlAnalyseCache;
+
+    @Inject
+    protected MLRegexCache mlRegexCache;
+
+    @Inject
+    protected Instance<MLAdapter> mlAdapterInstance;
+
     /**
      * WorkflowEvent listener to update the ml.status property.
      * <p>
@@ -259,7 +329,6 @@ public class MLService implements Serializable {
             logger.info("...train " + mlEndpoint + " model: " + mlModel);
 
             // send workitem to training service
-            MLClient mlClient = new MLClient(mlEndpoint);
             String content = getAllDocumentText(workitem);
             List<MLEntity> mlEntities = MLConfig.explodeMLEntityList(mlDefinition.getItemValue(ITEM_ML_ITEMS));
             // parse locales
@@ -267,7 +336,10 @@ public class MLService implements Serializable {
 
             // build training data set...
             XMLTrainingData trainingData = new TrainingDataBuilder(content, workitem, mlEntities, locales)
-                    .setAnalyzerEntityEvents(entityObjectEvents).build();
+                    .setAnalyzerEntityEvents(entityObjectEvents)
+                    .setEntityAdapterRegistry(entityAdapterRegistry).setEntityVariantCache(entityVariantCache)
+                    .setExecutor(trainingParallel ? executorService : null)
+                    .setMaxErrors(TrainingDataBuilder.parseMaxErrors(trainingMaxErrors.orElse(null))).build();
 
             // verify the TRAININGDATA_QUALITY_LEVEL
             if (XMLTrainingData.TRAININGDATA_QUALITY_BAD == trainingData.getQuality()) {
@@ -279,14 +351,163 @@ public class MLService implements Serializable {
             // post training data...
             // validate if usefull data
             if (!trainingData.isEmpty()) {
-                String resultData = mlClient.postTrainingData(trainingData, mlModel, mlOptions);
+                String resultData = mlClientRegistry.getClient(mlEndpoint).postTrainingData(trainingData, mlModel,
+                        mlOptions);
                 trainingResult = new MLTrainingResult(trainingData.getQuality(), resultData);
+                // cached results of the retrained model are outdated
+                mlAnalyseCache.invalidate(mlEndpoint, mlModel);
             }
         }
 
         return trainingResult;
     }
 
+    /**
+     * This method creates an eventLog entry to analyse a workitem asynchronously by
+     * the MLAnalyseScheduler. The entry is stored in the current transaction. So
+     * the analysis is only started if the processing of the workitem was
+     * successful.
+     * 
+     * @param workitem      - the processed workitem
+     * @param followUpEvent - optional event to be processed after the analysis or
+     *                      0
+     */
+    public void createAnalyseEvent(ItemCollection workitem, int followUpEvent) {
+        ItemCollection data = new ItemCollection();
+        data.setItemValue("$modelversion", workitem.getModelVersion());
+        data.setItemValue("$taskid", workitem.getTaskID());
+        data.setItemValue("$eventid", workitem.getEventID());
+        data.setItemValue(ITEM_ML_ASYNC_EVENT, followUpEvent);
+        eventLogService.createEvent(EVENTLOG_TOPIC_ANALYSE, workitem.getUniqueID(), data.getAllItems());
+    }
+
+    /**
+     * This method analyses a workitem by the MLAdapter for an eventLog entry
+     * created by the method createAnalyseEvent. The method is called by the
+     * MLAnalyseScheduler.
+     * <p>
+     * The workitem is loaded in a new transaction and analysed with the ml-config
+     * of the event which created the eventLog entry. The suggestions are only
+     * stored into items which are still empty. If a follow-up event is defined,
+     * the workitem is processed by this event, otherwise the workitem is saved. The
+     * eventLog entry is removed in the same transaction. If the workitem was
+     * modified in the meantime, the transaction fails with an
+     * OptimisticLockException and the analysis can be retried.
+     * 
+     * @param eventLogEntry - the eventLog entry
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void analyseWorkitem(EventLog eventLogEntry)
+            throws AdapterException, PluginException, ModelException, AccessDeniedException {
+        ItemCollection workitem = workflowService.getWorkItem(eventLogEntry.getRef());
+        if (workitem == null) {
+            logger.warning("...workitem '" + eventLogEntry.getRef() + "' not found - ml analysis skipped");
+            eventLogService.removeEvent(eventLogEntry);
+            return;
+        }
+        ItemCollection data = new ItemCollection(eventLogEntry.getData());
+        // the model event which scheduled the analysis
+        String modelVersion = data.getItemValueString("$modelversion");
+        int taskID = data.getItemValueInteger("$taskid");
+        int eventID = data.getItemValueInteger("$eventid");
+        Model model = modelService.getModel(modelVersion);
+        ItemCollection event = model.getEvent(taskID, eventID);
+
+        workitem = mlAdapterInstance.get().analyse(workitem, event, modelVersion, taskID, eventID);
+
+        int followUpEvent = data.getItemValueInteger(ITEM_ML_ASYNC_EVENT);
+        if (followUpEvent > 0) {
+            workitem.event(followUpEvent);
+            workflowService.processWorkItem(workitem);
+        } else {
+            workflowService.getDocumentService().save(workitem);
+        }
+        eventLogService.removeEvent(eventLogEntry);
+    }
+
+    /**
+     * This method reschedules an eventLog entry after a failed analysis. The entry
+     * is replaced by a new entry with a timeout. The delay of the timeout is
+     * doubled with each retry.
+     * <p>
+     * If the ML service is not available because all circuit breakers are open,
+     * the retry is not counted. After the maximum number of retries the entry is
+     * moved into the topic 'ml.analyse.error' and holds the last error in the item
+     * 'ml.error'.
+     * 
+     * @param eventLogEntry - the eventLog entry
+     * @param error         - the error of the failed analysis
+     */
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    public void retryAnalyseEvent(EventLog eventLogEntry, Exception error) {
+        ItemCollection data = new ItemCollection(eventLogEntry.getData());
+        int retries = data.getItemValueInteger(ITEM_ML_RETRIES);
+        data.setItemValue(ITEM_ML_ERROR, error.getMessage());
+        eventLogService.removeEvent(eventLogEntry);
+        if (isServiceUnavailable(error)) {
+            // wait until the ML service is available again
+            eventLogService.createEvent(EVENTLOG_TOPIC_ANALYSE, eventLogEntry.getRef(), data.getAllItems(),
+                    getRetryTimeout(0));
+            return;
+        }
+        if (retries >= analyseMaxRetries) {
+            logger.severe("...ml analysis of workitem '" + eventLogEntry.getRef() + "' failed " + (retries + 1)
+                    + " times - analysis canceled!");
+            eventLogService.createEvent(EVENTLOG_TOPIC_ANALYSE_ERROR, eventLogEntry.getRef(), data.getAllItems());
+            return;
+        }
+        data.setItemValue(ITEM_ML_RETRIES, retries + 1);
+        eventLogService.createEvent(EVENTLOG_TOPIC_ANALYSE, eventLogEntry.getRef(), data.getAllItems(),
+                getRetryTimeout(retries));
+    }
+
+    /**
+     * Returns the delay of a retry. The delay starts with the retry delay and is
+     * doubled with each retry up to 1 hour.
+     * 
+     * @param retries - the number of previous retries
+     * @return delay in ms
+     */
+    long getRetryDelay(int retries) {
+        long delay = analyseRetryDelay;
+        for (int i = 0; i < retries && delay < MAX_RETRY_DELAY; i++) {
+            delay = delay * 2;
+        }
+        return Math.min(delay, MAX_RETRY_DELAY);
+    }
+
+    private Calendar getRetryTimeout(int retries) {
+        Calendar timeout = Calendar.getInstance();
+        timeout.setTimeInMillis(System.currentTimeMillis() + getRetryDelay(retries));
+        return timeout;
+    }
+
+    /**
+     * Returns true if the given error or one of its causes signals that the ML
+     * service was not available because all circuit breakers are open.
+     */
+    private boolean isServiceUnavailable(Throwable error) {
+        while (error != null) {
+            if (error instanceof ProcessingErrorException
+                    && MLAdapter.API_UNAVAILABLE.equals(((ProcessingErrorException) error).getErrorCode())) {
+                return true;
+            }
+            error = error.getCause();
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if the ML service of the given endpoint is available. The
+     * service is not available if all circuit breakers of the endpoint are open.
+     * 
+     * @param serviceEndpoint - the ml API endpoint
+     * @return true if the service is available
+     */
+    public boolean isServiceAvailable(String serviceEndpoint) {
+        return mlClientRegistry.getClient(serviceEndpoint).isAvailable();
+    }
+
     /**
      * This method updates the item 'ml.definitions' of a workitem holding a list of
      * ML Endpoint definitions. Each endpoint definition is defined by a set of
@@ -355,7 +576,8 @@ public class MLService implements Serializable {
      * Analyse a text content by calling a ML Service Endpoint
      * <p>
      * The method returns a list of XMLAnalyseEntity extracted from the given text
-     * or null if the request failed.
+     * or null if the request failed. If the text was already analysed by the
+     * model, the result is taken from the MLAnalyseCache.
      * 
      * @param text            - text to be analyzed
      * @param serviceEndpoint - the ml API endpoint
@@ -363,9 +585,15 @@ public class MLService implements Serializable {
      * @return XMLAnalyseResult
      **/
     public XMLAnalyseResult analyseTextByMLFramework(String text, String serviceEndpoint, String mlModelName) {
-        // create a MLClient for the current service endpoint
-        MLClient mlClient = new MLClient(serviceEndpoint);
-        XMLAnalyseResult result = mlClient.postAnalyseData(text, mlModelName);
+        // test if the text was already analysed by the model
+        XMLAnalyseResult result = mlAnalyseCache.get(serviceEndpoint, mlModelName, text);
+        if (result != null) {
+            logger.fine("......ml analyse cache hit for model " + mlModelName);
+            return result;
+        }
+        // use the shared MLClient for the current service endpoint
+        result = mlClientRegistry.getClient(serviceEndpoint).postAnalyseData(text, mlModelName);
+        mlAnalyseCache.put(serviceEndpoint, mlModelName, text, result);
         return result;
     }
 
@@ -382,6 +610,26 @@ public class MLService implements Serializable {
      * @return XMLAnalyseResult containing a list of XMLAnalyseEntity
      **/
     public XMLAnalyseResult analyseTextByRegex(String text, ItemCollection mlConfig, XMLAnalyseResult anylseResult) {
+        return analyseTextByRegex(text, mlConfig, anylseResult, null, 0, 0);
+    }
+
+    /**
+     * Analyse a text by searching for matches in a text with Regex Pattern
+     * Recognition.
+     * <p>
+     * The compiled regex definitions are taken from the MLRegexCache for the model
+     * version, task and event of the ml-config.
+     * 
+     * @param text         - text to be analyzed
+     * @param anylseResult - a optional existing XMLAnalyseResult instance
+     * @param modelVersion - the model version of the event or null if no cache
+     *                     should be used
+     * @param taskID       - the task of the event
+     * @param eventID      - the event id
+     * @return XMLAnalyseResult containing a list of XMLAnalyseEntity
+     **/
+    public XMLAnalyseResult analyseTextByRegex(String text, ItemCollection mlConfig, XMLAnalyseResult anylseResult,
+            String modelVersion, int taskID, int eventID) {
         // do we have alredy an anylseResult?
         if (anylseResult == null) {
             anylseResult = new XMLAnalyseResult();
@@ -392,44 +640,41 @@ public class MLService implements Serializable {
             // no regex definitions found
             return anylseResult;
         }
-        for (String regexDev : regexDevList) {
-            if (regexDev.trim().isEmpty()) {
-                // no definition
+        List<RegexDefinition> regexDefinitions = null;
+        if (modelVersion != null && !modelVersion.isEmpty() && mlRegexCache != null) {
+            regexDefinitions = mlRegexCache.getDefinitions(modelVersion, taskID, eventID, regexDevList);
+        } else {
+            regexDefinitions = MLRegexCache.parseDefinitions(regexDevList);
+        }
+
+        // the labels for which we have already a result
+        Set<String> foundLabels = new HashSet<String>();
+        for (XMLAnalyseEntity analyseEntity : anylseResult.getEntities()) {
+            if (!analyseEntity.getText().isEmpty()) {
+                foundLabels.add(analyseEntity.getLabel());
+            }
+        }
+        int limit = regexMaxMatches > 0 ? regexMaxMatches : Integer.MAX_VALUE;
+        Map<String, Integer> labelCounts = new HashMap<String, Integer>();
+        for (RegexDefinition regexDefinition : regexDefinitions) {
+            String name = regexDefinition.getName();
+            // do we have already a result for this item?
+            if (foundLabels.contains(name)) {
                 continue;
             }
-            try {
-                // evaluate the item content (XML format expected here!)
-                ItemCollection regexData = XMLParser.parseItemStructure(regexDev);
-
-                if (regexData != null) {
-                    String name = regexData.getItemValueString("name");
-                    String patternString = regexData.getItemValueString("pattern");
-
-                    // do we have already a result for this item?
-                    List<XMLAnalyseEntity> mlEntityList = anylseResult.getEntities();
-                    boolean found = false;
-                    for (XMLAnalyseEntity analyseEntity : mlEntityList) {
-                        if (name.equals(analyseEntity.getLabel()) && !analyseEntity.getText().isEmpty()) {
-                            found = true;
-                            break;
-                        }
-                    }
-                    if (!found) {
-                        // no value found so far - so apply the regex pattern...
-                        Pattern p = Pattern.compile(patternString); // the pattern to search for
-                        Matcher m = p.matcher(text);
-                        // now try to find at least one match
-                        while (m.find()) {
-                            String value = m.group();
-                            logger.info("...apply Regex Pattern Recognition for '" + name + "'");
-                            anylseResult.getEntities().add(new XMLAnalyseEntity(name, value));
-                        }
-                    }
+            // no value found so far - so apply the regex pattern...
+            int count = labelCounts.getOrDefault(name, 0);
+            Matcher m = regexDefinition.getPattern().matcher(text);
+            while (count < limit && m.find()) {
+                String value = m.group();
+                logger.info("...apply Regex Pattern Recognition for '" + name + "'");
+                anylseResult.getEntities().add(new XMLAnalyseEntity(name, value));
+                count++;
+                if (!value.isEmpty()) {
+                    foundLabels.add(name);
                 }
-            } catch (PluginException e) {
-                logger.warning("Invalid ml.config definition with unexpected regex element - verify model!");
             }
-
+            labelCounts.put(name, count);
         }
 
         return anylseResult;
@@ -0,0 +1,82 @@
+package org.imixs.ml.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.imixs.ml.core.MLEntity;
+import org.imixs.workflow.ItemCollection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import util.LocaleHelper;
+
+/**
+ * Test the MLAdapterConfigCache
+ * 
+ * @author rsoika
+ * 
+ */
+public class TestMLAdapterConfigCache {
+
+    protected MLAdapterConfigCache cache = null;
+    protected AtomicInteger parseCount = new AtomicInteger();
+
+    @Before
+    public void setup() {
+        cache = new MLAdapterConfigCache();
+    }
+
+    /**
+     * The ml-config is parsed only once for an unchanged ml-config of the same
+     * event.
+     */
+    @Test
+    public void testCache() {
+        MLAdapterConfig config = cache.getConfig("1.0.0", 100, 10, createMLConfig("invoice-model"), this::parse);
+        Assert.assertEquals("invoice-model", config.getModel());
+        Assert.assertSame(config, cache.getConfig("1.0.0", 100, 10, createMLConfig("invoice-model"), this::parse));
+        Assert.assertEquals(1, parseCount.get());
+
+        // another event
+        cache.getConfig("1.0.0", 100, 20, createMLConfig("invoice-model"), this::parse);
+        Assert.assertEquals(2, parseCount.get());
+        Assert.assertEquals(2, cache.getSize());
+
+        // a changed ml-config (e.g. by an item value) replaces the entry
+        config = cache.getConfig("1.0.0", 100, 20, createMLConfig("order-model"), this::parse);
+        Assert.assertEquals("order-model", config.getModel());
+        Assert.assertEquals(3, parseCount.get());
+        Assert.assertEquals(2, cache.getSize());
+    }
+
+    /**
+     * The parsed lists of a config can not be modified.
+     */
+    @Test
+    public void testImmutableConfig() {
+        MLAdapterConfig config = parse(createMLConfig("invoice-model"));
+        try {
+            config.getEntities().add(new MLEntity("_iban", "iban", null, 0, false));
+            Assert.fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    private ItemCollection createMLConfig(String model) {
+        ItemCollection mlConfig = new ItemCollection();
+        mlConfig.setItemValue("model", model);
+        mlConfig.setItemValue("locales", "de_DE,en_GB");
+        return mlConfig;
+    }
+
+    private MLAdapterConfig parse(ItemCollection mlConfig) {
+        parseCount.incrementAndGet();
+        String locales = mlConfig.getItemValueString("locales");
+        return new MLAdapterConfig("http://localhost:8000/api/", mlConfig.getItemValueString("model"), locales,
+                LocaleHelper.parseLocales(locales), null, null,
+                new ArrayList<MLEntity>(Arrays.asList(new MLEntity("_invoicetotal", "currency", null, 0, false))));
+    }
+}
@@ -0,0 +1,111 @@
+package org.imixs.ml.workflow;
+
+import org.imixs.ml.xml.XMLAnalyseEntity;
+import org.imixs.ml.xml.XMLAnalyseResult;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the ml analyse cache
+ * 
+ * @author rsoika
+ * 
+ */
+public class TestMLAnalyseCache {
+
+    private static final String ENDPOINT = "http://imixs-ml-spacy:8000/";
+
+    protected MLAnalyseCache cache = null;
+
+    @Before
+    public void setup() {
+        cache = new MLAnalyseCache();
+        cache.maxSize = 2;
+        cache.ttl = 60000;
+    }
+
+    /**
+     * A cached result is returned as a copy
+     */
+    @Test
+    public void testGetCopy() {
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "Hello World"));
+        cache.put(ENDPOINT, "invoice-de", "Hello World", buildResult());
+
+        // the trailing / of the endpoint is ignored
+        XMLAnalyseResult result = cache.get("http://imixs-ml-spacy:8000", "invoice-de", "Hello World");
+        Assert.assertNotNull(result);
+        Assert.assertEquals(1, result.getEntities().size());
+        Assert.assertEquals("iban", result.getEntities().get(0).getLabel());
+
+        // a modified result must not change the cache
+        result.getEntities().add(new XMLAnalyseEntity("bic", "XYZ"));
+        Assert.assertEquals(1, cache.get(ENDPOINT, "invoice-de", "Hello World").getEntities().size());
+
+        // other model or text
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-en", "Hello World"));
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "Hello World!"));
+
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+    }
+
+    /**
+     * The least recently used entry is removed
+     */
+    @Test
+    public void testEviction() {
+        cache.put(ENDPOINT, "invoice-de", "text-1", buildResult());
+        cache.put(ENDPOINT, "invoice-de", "text-2", buildResult());
+        // access text-1
+        Assert.assertNotNull(cache.get(ENDPOINT, "invoice-de", "text-1"));
+        cache.put(ENDPOINT, "invoice-de", "text-3", buildResult());
+
+        Assert.assertEquals(2, cache.getSize());
+        Assert.assertNotNull(cache.get(ENDPOINT, "invoice-de", "text-1"));
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "text-2"));
+    }
+
+    /**
+     * Expired entries are not returned
+     */
+    @Test
+    public void testTTL() throws InterruptedException {
+        cache.ttl = 1;
+        cache.put(ENDPOINT, "invoice-de", "text-1", buildResult());
+        Thread.sleep(10);
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "text-1"));
+        Assert.assertEquals(0, cache.getSize());
+    }
+
+    /**
+     * All entries of a model are removed after training
+     */
+    @Test
+    public void testInvalidate() {
+        cache.put(ENDPOINT, "invoice-de", "text-1", buildResult());
+        cache.put(ENDPOINT, "invoice-en", "text-1", buildResult());
+        cache.invalidate(ENDPOINT, "invoice-de");
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "text-1"));
+        Assert.assertNotNull(cache.get(ENDPOINT, "invoice-en", "text-1"));
+    }
+
+    /**
+     * A disabled cache stores nothing
+     */
+    @Test
+    public void testDisabled() {
+        cache.maxSize = 0;
+        cache.put(ENDPOINT, "invoice-de", "text-1", buildResult());
+        Assert.assertNull(cache.get(ENDPOINT, "invoice-de", "text-1"));
+        Assert.assertEquals(0, cache.getMisses());
+    }
+
+    private XMLAnalyseResult buildResult() {
+        XMLAnalyseResult result = new XMLAnalyseResult();
+        result.getEntities().add(new XMLAnalyseEntity("iban", "DE69 5095 1469 0005 0111 11"));
+        return result;
+    }
+
+}
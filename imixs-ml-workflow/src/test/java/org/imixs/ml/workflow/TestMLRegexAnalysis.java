@@ -0,0 +1,92 @@
+package org.imixs.ml.workflow;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.imixs.ml.xml.XMLAnalyseEntity;
+import org.imixs.ml.xml.XMLAnalyseResult;
+import org.imixs.workflow.ItemCollection;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the Regex Pattern Recognition of the MLService
+ *
+ * @author rsoika
+ *
+ */
+public class TestMLRegexAnalysis {
+
+    protected MLService mlService = null;
+    protected String text = "IBAN: DE11 5021 0900 0000 4910 29 Swift: CIXXDEFF and a second one CIXXDEAA-";
+
+    @Before
+    public void setup() {
+        mlService = new MLService();
+    }
+
+    /**
+     * Each definition is searched separately, so also overlapping matches of
+     * different labels are found.
+     */
+    @Test
+    public void testOverlappingLabels() {
+        ItemCollection mlConfig = new ItemCollection();
+        mlConfig.setItemValue("regex", "<name>swift</name><pattern>CIXXDE[A-Z]{2}</pattern>");
+        mlConfig.appendItemValue("regex", "<name>country</name><pattern>DE[A-Z]{2}</pattern>");
+
+        XMLAnalyseResult result = mlService.analyseTextByRegex(text, mlConfig, null);
+        Assert.assertEquals("[swift=CIXXDEFF, swift=CIXXDEAA, country=DEFF, country=DEAA]",
+                toString(result));
+    }
+
+    /**
+     * A second definition of a label is skipped if the first definition found a
+     * value. Also an existing result is not overwritten.
+     */
+    @Test
+    public void testFallbackDefinitions() {
+        ItemCollection mlConfig = new ItemCollection();
+        mlConfig.setItemValue("regex", "<name>swift</name><pattern>CIXXDE[A-Z]{2}</pattern>");
+        mlConfig.appendItemValue("regex", "<name>swift</name><pattern>[A-Z]{8}</pattern>");
+        mlConfig.appendItemValue("regex", "<name>repeat</name><pattern>([A-Z])\\1</pattern>");
+
+        XMLAnalyseResult result = mlService.analyseTextByRegex(text, mlConfig, null);
+        Assert.assertEquals(
+                "[swift=CIXXDEFF, swift=CIXXDEAA, repeat=XX, repeat=FF, repeat=XX, repeat=AA]",
+                toString(result));
+
+        XMLAnalyseResult existingResult = new XMLAnalyseResult();
+        existingResult.getEntities().add(new XMLAnalyseEntity("swift", "ABCDEFGH"));
+        result = mlService.analyseTextByRegex(text, mlConfig, existingResult);
+        Assert.assertEquals("[swift=ABCDEFGH, repeat=XX, repeat=FF, repeat=XX, repeat=AA]", toString(result));
+    }
+
+    /**
+     * The number of matches per label can be limited.
+     */
+    @Test
+    public void testMaxMatches() {
+        ItemCollection mlConfig = new ItemCollection();
+        mlConfig.setItemValue("regex", "<name>repeat</name><pattern>([A-Z])\\1</pattern>");
+        mlConfig.appendItemValue("regex", "<name>swift</name><pattern>CIXXDE[A-Z]{2}</pattern>");
+
+        mlService.regexMaxMatches = 2;
+        XMLAnalyseResult result = mlService.analyseTextByRegex(text, mlConfig, null);
+        Assert.assertEquals("[repeat=XX, repeat=FF, swift=CIXXDEFF, swift=CIXXDEAA]", toString(result));
+
+        mlService.regexMaxMatches = 1;
+        result = mlService.analyseTextByRegex(text, mlConfig, null);
+        Assert.assertEquals("[repeat=XX, swift=CIXXDEFF]", toString(result));
+    }
+
+    private String toString(XMLAnalyseResult result) {
+        List<String> entities = new ArrayList<String>();
+        for (XMLAnalyseEntity entity : result.getEntities()) {
+            entities.add(entity.getLabel() + "=" + entity.getText());
+        }
+        return entities.toString();
+    }
+
+}
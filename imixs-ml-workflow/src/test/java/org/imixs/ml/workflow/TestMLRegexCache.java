@@ -0,0 +1,62 @@
+package org.imixs.ml.workflow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.imixs.ml.workflow.MLRegexCache.RegexDefinition;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the MLRegexCache
+ * 
+ * @author rsoika
+ * 
+ */
+public class TestMLRegexCache {
+
+    protected MLRegexCache cache = null;
+    protected List<String> regexDevList = Arrays.asList("<name>iban</name><pattern>DE[0-9]{20}</pattern>", " ",
+            "<name>bic</name><pattern>[A-Z]{6}[A-Z0-9]{2}</pattern>");
+
+    @Before
+    public void setup() {
+        cache = new MLRegexCache();
+    }
+
+    /**
+     * Test the parsing and compiling of the regex definitions.
+     */
+    @Test
+    public void testParseDefinitions() {
+        List<RegexDefinition> definitions = MLRegexCache.parseDefinitions(regexDevList);
+        Assert.assertEquals(2, definitions.size());
+        Assert.assertEquals("iban", definitions.get(0).getName());
+        Assert.assertTrue(definitions.get(0).getPattern().matcher("DE11502109000000491029").matches());
+        Assert.assertEquals("bic", definitions.get(1).getName());
+    }
+
+    /**
+     * The definitions are cached per model event and parsed again for changed
+     * definitions.
+     */
+    @Test
+    public void testCache() {
+        List<RegexDefinition> definitions = cache.getDefinitions("1.0.0", 100, 10, regexDevList);
+        Assert.assertSame(definitions, cache.getDefinitions("1.0.0", 100, 10, regexDevList));
+        Assert.assertNotSame(definitions, cache.getDefinitions("1.0.0", 100, 20, regexDevList));
+        Assert.assertNotSame(definitions, cache.getDefinitions("1.0.1", 100, 10, regexDevList));
+        Assert.assertEquals(3, cache.getSize());
+
+        // an equal definition list of an updated model
+        Assert.assertSame(definitions, cache.getDefinitions("1.0.0", 100, 10, new ArrayList<String>(regexDevList)));
+
+        // changed definitions
+        List<RegexDefinition> changedDefinitions = cache.getDefinitions("1.0.0", 100, 10,
+                regexDevList.subList(0, 1));
+        Assert.assertEquals(1, changedDefinitions.size());
+        Assert.assertEquals(3, cache.getSize());
+    }
+}
@@ -37,4 +37,19 @@ public class TestMLService {
       
     }
 
+    /**
+     * Test the growing delay of a retried analysis
+     */
+    @Test
+    public void testRetryDelay() {
+        MLService mlService = new MLService();
+        mlService.analyseRetryDelay = 10000;
+        Assert.assertEquals(10000, mlService.getRetryDelay(0));
+        Assert.assertEquals(20000, mlService.getRetryDelay(1));
+        Assert.assertEquals(80000, mlService.getRetryDelay(3));
+        // the delay is limited to 1 hour
+        Assert.assertEquals(3600000, mlService.getRetryDelay(9));
+        Assert.assertEquals(3600000, mlService.getRetryDelay(100));
+    }
+
 }